@@ -0,0 +1,32 @@
+package com.akgarg.hibernate;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching the given regular expression (all by default) with the gc profiler, so allocation
+ * rates are reported next to the timings, and writes the results as JSON to be compared across releases.
+ * <p>
+ * Usage: {@code BenchmarkRunner [include regex] [result file]}
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        final String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        final String resultFile = args.length > 1 ? args[1] : "target/jmh-result.json";
+
+        final Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+
+        new Runner(options).run();
+    }
+
+}
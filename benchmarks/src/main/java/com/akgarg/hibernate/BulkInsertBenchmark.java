@@ -0,0 +1,76 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudents;
+
+/**
+ * Time to insert students with the old one-transaction-per-row loop versus the batched {@link BulkInserter} modes.
+ * <p>
+ * The per-row loop never clears its session, so every commit dirty checks all rows inserted before it and the loop
+ * gets quadratically slower; it is therefore run with its own (smaller) row count. Every iteration inserts into a new
+ * empty database.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkInsertBenchmark {
+
+    @Param({"200000"})
+    private long rows;
+
+    @Param({"20000"})
+    private long perRowLoopRows;
+
+    @Param({"5000"})
+    private int chunkSize;
+
+    private EmbeddedStudentDatabase database;
+
+    @Setup(Level.Iteration)
+    public void createDatabase() {
+        database = EmbeddedStudentDatabase.create(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeDatabase() {
+        database.close();
+    }
+
+    /**
+     * The loop {@link HibernateUtils#insertStudentsAndClear(Session, int)} used before the bulk insert path existed.
+     */
+    @Benchmark
+    public long perRowTransaction() {
+        final Iterator<Student> students = syntheticStudents(perRowLoopRows);
+        try (Session session = database.sessionFactory().openSession()) {
+            while (students.hasNext()) {
+                session.beginTransaction();
+                session.persist(students.next());
+                session.getTransaction().commit();
+            }
+        }
+        return perRowLoopRows;
+    }
+
+    @Benchmark
+    public BulkInserter.Result batchedSession() {
+        return BulkInserter.insert(database.sessionFactory(), syntheticStudents(rows),
+                BulkInserter.Options.defaults().withChunkSize(chunkSize));
+    }
+
+    @Benchmark
+    public BulkInserter.Result statelessSession() {
+        return BulkInserter.insert(database.sessionFactory(), syntheticStudents(rows),
+                BulkInserter.Options.defaults().withChunkSize(chunkSize).withMode(BulkInserter.Mode.STATELESS));
+    }
+
+}
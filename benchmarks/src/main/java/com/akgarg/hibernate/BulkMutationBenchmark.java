@@ -0,0 +1,145 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to update, upsert and delete {@code idCount} students with {@link BulkMutator} versus the one-id-per-statement
+ * loops of {@link HQLExample}.
+ * <p>
+ * Every invocation changes the same students, the table is put back in shape before each iteration: deleted students
+ * are inserted again and the students added by the upserts are removed, so half of the upserted students exist and
+ * half are new.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BulkMutationBenchmark {
+
+    @Param({"100000"})
+    private int tableSize;
+
+    @Param({"1000", "20000"})
+    private int idCount;
+
+    private EmbeddedStudentDatabase database;
+    private List<Integer> updateIds;
+    private List<Integer> deleteIds;
+    private List<Student> deletedStudents;
+    private List<Student> upsertedStudents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (3 * idCount > tableSize) {
+            throw new IllegalArgumentException("idCount must be at most a third of tableSize");
+        }
+        database = EmbeddedStudentDatabase.create(tableSize);
+
+        // every other id, so that the ids are not one contiguous range
+        updateIds = new ArrayList<>(idCount);
+        deleteIds = new ArrayList<>(idCount);
+        deletedStudents = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            updateIds.add(2 * i + 1);
+            deleteIds.add(2 * i + 2);
+            deletedStudents.add(student(2 * i + 2, 2 * i + 1));
+        }
+
+        // half of the upserted students exist already, the other half is new
+        upsertedStudents = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            final int id = i < idCount / 2 ? tableSize - idCount / 2 + 1 + i : tableSize + 1 + i - idCount / 2;
+            upsertedStudents.add(student(id, i));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void restoreTable() {
+        try (Session session = database.sessionFactory().openSession()) {
+            BulkMutator.upsert(session, deletedStudents, BulkMutator.Options.defaults());
+            session.beginTransaction();
+            session.createMutationQuery("DELETE FROM Student s WHERE s.id > :id")
+                    .setParameter("id", tableSize)
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public long perIdUpdate() {
+        try (Session session = database.sessionFactory().openSession()) {
+            for (final Integer id : updateIds) {
+                session.beginTransaction();
+                session.createMutationQuery("UPDATE Student s SET s.team = :team WHERE s.id = :id")
+                        .setParameter("team", "Team per id")
+                        .setParameter("id", id)
+                        .executeUpdate();
+                session.getTransaction().commit();
+            }
+            return updateIds.size();
+        }
+    }
+
+    @Benchmark
+    public long bulkUpdate() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return BulkMutator.update(session, updateIds, Map.of("team", "Team bulk"), BulkMutator.Options.defaults()).rows();
+        }
+    }
+
+    @Benchmark
+    public long perRowUpsert() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return BulkMutator.upsert(session, upsertedStudents, BulkMutator.Options.defaults().withMaxInListSize(1)).rows();
+        }
+    }
+
+    @Benchmark
+    public long bulkUpsert() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return BulkMutator.upsert(session, upsertedStudents, BulkMutator.Options.defaults()).rows();
+        }
+    }
+
+    @Benchmark
+    public long perIdDelete() {
+        try (Session session = database.sessionFactory().openSession()) {
+            for (final Integer id : deleteIds) {
+                session.beginTransaction();
+                session.createMutationQuery("DELETE FROM Student s WHERE s.id = :id")
+                        .setParameter("id", id)
+                        .executeUpdate();
+                session.getTransaction().commit();
+            }
+            return deleteIds.size();
+        }
+    }
+
+    @Benchmark
+    public long bulkDelete() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return BulkMutator.delete(session, deleteIds, BulkMutator.Options.defaults()).rows();
+        }
+    }
+
+    private static Student student(final int id, final long index) {
+        final Student student = HibernateUtils.syntheticStudent(index);
+        student.setId(id);
+        return student;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.akgarg.hibernate;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to import a students CSV file of {@code rows} lines with {@link CsvImporter} and 1, 2 or 4 writers. One line in
+ * a thousand is malformed, so the rejected output is exercised too.
+ * <p>
+ * The file is generated once per trial, every iteration imports it into a new empty database.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvImportBenchmark {
+
+    @Param({"1000000"})
+    private long rows;
+
+    @Param({"1", "2", "4"})
+    private int writers;
+
+    private Path directory;
+    private Path csv;
+    private Path rejected;
+    private EmbeddedStudentDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("csv-import-benchmark");
+        csv = directory.resolve("students.csv");
+        rejected = directory.resolve("rejected.csv");
+        generate(csv, rows);
+    }
+
+    @Setup(Level.Iteration)
+    public void createDatabase() {
+        database = EmbeddedStudentDatabase.create(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(rejected);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public CsvImporter.Report importFile() throws IOException {
+        return CsvImporter.importFile(database.sessionFactory(), csv, rejected, CsvImporter.Options.defaults().withWriters(writers));
+    }
+
+    private static void generate(final Path csv, final long rows) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("name,team\n");
+            for (long i = 0; i < rows; i++) {
+                if (i % 1_000 == 999) {
+                    writer.write("Student " + i + "\n");  // missing team
+                } else if (i % 100 == 0) {
+                    writer.write("\"Student, " + i + "\",Team " + (i % 16) + "\n");
+                } else {
+                    writer.write("Student " + i + ",Team " + (i % 16) + "\n");
+                }
+            }
+        }
+    }
+
+}
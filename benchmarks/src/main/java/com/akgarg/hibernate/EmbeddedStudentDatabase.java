@@ -0,0 +1,66 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.CacheSettings;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Private in-memory H2 database behind a connection pool, preloaded with a given number of students.
+ * <p>
+ * Second level and query caches are disabled so that the benchmarks measure the query paths and not the caches.
+ */
+final class EmbeddedStudentDatabase implements AutoCloseable {
+
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+
+    private final int tableSize;
+    private final ConnectionPool connectionPool;
+    private final SessionFactory sessionFactory;
+
+    private EmbeddedStudentDatabase(final int tableSize, final Map<String, Object> overrides) {
+        this.tableSize = tableSize;
+        this.connectionPool = ConnectionPool.create(PoolSettings.embedded("benchmark_" + DATABASE_COUNTER.incrementAndGet()));
+
+        final Map<String, Object> settings = HConf.embeddedDatabaseSettings(connectionPool);
+        settings.put(CacheSettings.USE_SECOND_LEVEL_CACHE, false);
+        settings.put(CacheSettings.USE_QUERY_CACHE, false);
+        settings.putAll(overrides);
+        this.sessionFactory = HConf.getSessionFactory(settings);
+
+        BulkInserter.insert(sessionFactory, HibernateUtils.syntheticStudents(tableSize),
+                BulkInserter.Options.defaults().withMode(BulkInserter.Mode.STATELESS));
+    }
+
+    static EmbeddedStudentDatabase create(final int tableSize) {
+        return new EmbeddedStudentDatabase(tableSize, Map.of());
+    }
+
+    static EmbeddedStudentDatabase create(final int tableSize, final Map<String, Object> overrides) {
+        return new EmbeddedStudentDatabase(tableSize, overrides);
+    }
+
+    SessionFactory sessionFactory() {
+        return sessionFactory;
+    }
+
+    int tableSize() {
+        return tableSize;
+    }
+
+    /**
+     * Id of a random preloaded student, ids of preloaded students are {@code 1..tableSize}.
+     */
+    int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, tableSize + 1);
+    }
+
+    @Override
+    public void close() {
+        sessionFactory.close();
+        connectionPool.close();
+    }
+
+}
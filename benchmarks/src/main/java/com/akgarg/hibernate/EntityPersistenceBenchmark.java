@@ -0,0 +1,69 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code session.get} by id (the baseline the query APIs in {@link QueryApiBenchmark} compete with) and the
+ * per-row cost of persisting students, one transaction per row versus {@link BulkInserter}.
+ * <p>
+ * Persisted rows stay in the table, so the table grows by the rows inserted during the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityPersistenceBenchmark {
+
+    private static final int BULK_ROWS = 1_000;
+
+    @Param({"1000", "100000"})
+    private int tableSize;
+
+    private EmbeddedStudentDatabase database;
+    private long nextIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedStudentDatabase.create(tableSize);
+        nextIndex = tableSize;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Student sessionGet() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return session.get(Student.class, database.randomId());
+        }
+    }
+
+    @Benchmark
+    public int persistOneRowPerTransaction() {
+        try (Session session = database.sessionFactory().openSession()) {
+            final Student student = HibernateUtils.syntheticStudent(nextIndex++);
+            session.beginTransaction();
+            session.persist(student);
+            session.getTransaction().commit();
+            return student.getId();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_ROWS)
+    public long persistBulk() {
+        final BulkInserter.Result result = BulkInserter.insert(database.sessionFactory(),
+                HibernateUtils.syntheticStudents(BULK_ROWS), BulkInserter.Options.defaults());
+        nextIndex += BULK_ROWS;
+        return result.rows();
+    }
+
+}
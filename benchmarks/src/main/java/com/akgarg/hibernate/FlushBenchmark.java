@@ -0,0 +1,79 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flush time of a session against the number of students it manages, with none or {@code changedPercent}% of them
+ * changed.
+ * <p>
+ * The students are loaded and changed before each iteration, only the flush is timed. The dirty checking mode depends
+ * on the build of the examples: with a plain build hibernate compares every managed student with its snapshot, with
+ * {@code mvn -Penhance install} the entities report their own changes. Run the benchmark once per build to compare
+ * the two. A {@link ReadOnlySessions read-only} session, which keeps no snapshots and ignores the changes, is
+ * measured in both builds.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class FlushBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    private int size;
+
+    @Param({"0", "1"})
+    private int changedPercent;
+
+    @Param({"REGULAR", "READ_ONLY"})
+    private String session;
+
+    private EmbeddedStudentDatabase database;
+    private Session loadedSession;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedStudentDatabase.create(size);
+    }
+
+    @Setup(Level.Iteration)
+    public void loadStudents() {
+        loadedSession = "READ_ONLY".equals(session)
+                ? ReadOnlySessions.open(database.sessionFactory())
+                : database.sessionFactory().openSession();
+        loadedSession.beginTransaction();
+        final List<Student> students = loadedSession.createSelectionQuery("FROM Student", Student.class).list();
+
+        if (changedPercent > 0) {
+            final int step = 100 / changedPercent;
+            iteration++;
+            for (int i = iteration % step; i < students.size(); i += step) {
+                students.get(i).setTeam("Team iteration " + iteration);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSession() {
+        loadedSession.getTransaction().commit();
+        loadedSession.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void flush() {
+        loadedSession.flush();
+    }
+
+}
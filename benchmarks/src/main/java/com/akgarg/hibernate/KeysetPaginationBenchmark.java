@@ -0,0 +1,78 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of fetching page N with an offset ({@code setFirstResult}) versus a keyset cursor, by table size and sort.
+ * Offset pages get slower the deeper they are, keyset pages should not.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeysetPaginationBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"100000", "1000000"})
+    private int tableSize;
+
+    @Param({"1", "100", "4000"})
+    private int pageNumber;
+
+    @Param({"ID", "NAME_AND_ID"})
+    private String sortBy;
+
+    private EmbeddedStudentDatabase database;
+    private KeysetSort<Student> sort;
+    private String orderBy;
+    private String cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedStudentDatabase.create(tableSize);
+        sort = "ID".equals(sortBy) ? KeysetSort.STUDENT_BY_ID : KeysetSort.STUDENT_BY_NAME_AND_ID;
+        orderBy = "ID".equals(sortBy) ? "s.id" : "s.name, s.id";
+
+        // the cursor of page N is the sort key of the last row of page N - 1
+        if (pageNumber > 1) {
+            try (Session session = database.sessionFactory().openSession()) {
+                final Student lastRowOfPreviousPage = session.createQuery("FROM Student s ORDER BY " + orderBy, Student.class)
+                        .setFirstResult((pageNumber - 1) * PAGE_SIZE - 1)
+                        .setMaxResults(1)
+                        .uniqueResult();
+                cursor = sort.encode(lastRowOfPreviousPage);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Student> offsetPage() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return session.createQuery("FROM Student s ORDER BY " + orderBy, Student.class)
+                    .setFirstResult((pageNumber - 1) * PAGE_SIZE)
+                    .setMaxResults(PAGE_SIZE)
+                    .list();
+        }
+    }
+
+    @Benchmark
+    public List<Student> keysetPage() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return KeysetPagination.hql(session, sort, cursor, KeysetPagination.Direction.FORWARD, PAGE_SIZE).items();
+        }
+    }
+
+}
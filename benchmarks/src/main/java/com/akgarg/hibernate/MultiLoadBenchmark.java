@@ -0,0 +1,93 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.hibernate.cfg.CacheSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load {@code idCount} students with {@link MultiLoader} versus the {@code session.get} loop of
+ * {@link CacheExample}, with a cold second level cache and with half of the students cached.
+ * <p>
+ * The second level cache is enabled here, the cache is emptied (and half filled) again before each iteration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class MultiLoadBenchmark {
+
+    @Param({"100000"})
+    private int tableSize;
+
+    @Param({"1000", "10000"})
+    private int idCount;
+
+    @Param({"COLD", "HALF_CACHED"})
+    private String cache;
+
+    private EmbeddedStudentDatabase database;
+    private List<Integer> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedStudentDatabase.create(tableSize, Map.of(CacheSettings.USE_SECOND_LEVEL_CACHE, true));
+
+        // every other id, so that the ids are not one contiguous range, plus a few ids without a student
+        ids = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            ids.add(i % 100 == 99 ? tableSize + i : 2 * i + 1);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareCache() {
+        database.sessionFactory().getCache().evictAllRegions();
+        if ("HALF_CACHED".equals(cache)) {
+            try (Session session = database.sessionFactory().openSession()) {
+                MultiLoader.load(session, Student.class, ids.subList(0, idCount / 2), MultiLoader.Options.defaults());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * The {@link CacheExample} way, one {@code session.get} and one select per id.
+     */
+    @Benchmark
+    public List<Student> perIdGet() {
+        try (Session session = database.sessionFactory().openSession()) {
+            final List<Student> students = new ArrayList<>(ids.size());
+            for (final Integer id : ids) {
+                students.add(session.get(Student.class, id));
+            }
+            return students;
+        }
+    }
+
+    @Benchmark
+    public List<Student> multiLoad() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return MultiLoader.load(session, Student.class, ids, MultiLoader.Options.defaults());
+        }
+    }
+
+    @Benchmark
+    public List<Student> multiLoad500PerSelect() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return MultiLoader.load(session, Student.class, ids, MultiLoader.Options.defaults().withBatchSize(500));
+        }
+    }
+
+}
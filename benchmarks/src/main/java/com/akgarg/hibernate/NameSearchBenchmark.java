@@ -0,0 +1,66 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding students by a word of their name with {@code LIKE '%...%'}, which scans the whole table, and with
+ * {@link StudentSearch} over an in-memory full-text index. Both look for the same single student.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameSearchBenchmark {
+
+    @Param({"10000", "200000"})
+    private int tableSize;
+
+    private EmbeddedStudentDatabase database;
+    private String word;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedStudentDatabase.create(tableSize, Map.copyOf(StudentSearch.hibernateSettings(StudentSearch.Storage.inMemory())));
+        // the students are preloaded with a stateless session, which is not indexed
+        StudentSearch.reindex(database.sessionFactory());
+        // synthetic names are "Student <index>"
+        word = String.valueOf(tableSize / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Integer> like() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return session.createSelectionQuery("SELECT s.id FROM Student s WHERE s.name LIKE :pattern", Integer.class)
+                    .setParameter("pattern", "% " + word)
+                    .list();
+        }
+    }
+
+    @Benchmark
+    public List<Integer> fullTextIds() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return StudentSearch.ids(session, word, 10);
+        }
+    }
+
+    @Benchmark
+    public List<Student> fullTextEntities() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return StudentSearch.entities(session, word, 10);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and allocations of reading the whole student table as managed entities, as read-only entities and as
+ * {@link StudentView} records through each of the {@link StudentProjections} query kinds.
+ * <p>
+ * Run with {@code -prof gc} (the default in {@link BenchmarkRunner}) to compare the allocations per read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    @Param({"1000", "50000"})
+    private int tableSize;
+
+    private EmbeddedStudentDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedStudentDatabase.create(tableSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Student> entities() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return session.createSelectionQuery("FROM Student s", Student.class).list();
+        }
+    }
+
+    @Benchmark
+    public List<Student> readOnlyEntities() {
+        try (Session session = ReadOnlySessions.open(database.sessionFactory())) {
+            return session.createSelectionQuery("FROM Student s", Student.class).list();
+        }
+    }
+
+    @Benchmark
+    public List<StudentView> hqlProjection() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return StudentProjections.hql(session, StudentView.class, "").list();
+        }
+    }
+
+    @Benchmark
+    public List<StudentView> criteriaProjection() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return StudentProjections.criteria(session, StudentView.class, StudentProjections.Restriction.NONE).list();
+        }
+    }
+
+    @Benchmark
+    public List<StudentView> nativeProjection() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return StudentProjections.nativeQuery(session, StudentView.class, "SELECT id, name FROM student").list();
+        }
+    }
+
+}
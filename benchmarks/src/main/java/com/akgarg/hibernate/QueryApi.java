@@ -0,0 +1,161 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaDelete;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaCriteriaUpdate;
+import org.hibernate.query.criteria.JpaRoot;
+
+import java.util.List;
+
+/**
+ * The same read and write operations expressed with each of the query APIs shown in {@link HQLExample},
+ * {@link CriteriaExample} and {@link NativeQueryExample}.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public enum QueryApi {
+
+    HQL {
+        @Override
+        Student getById(final Session session, final int id) {
+            return session.createQuery("FROM Student s WHERE s.id = :id", Student.class)
+                    .setParameter("id", id)
+                    .uniqueResult();
+        }
+
+        @Override
+        List<Student> findAll(final Session session) {
+            return session.createQuery("FROM Student", Student.class).list();
+        }
+
+        @Override
+        List<Student> findPage(final Session session, final int firstResult, final int maxResults) {
+            return session.createQuery("FROM Student s ORDER BY s.id", Student.class)
+                    .setFirstResult(firstResult)
+                    .setMaxResults(maxResults)
+                    .list();
+        }
+
+        @Override
+        int updateNameById(final Session session, final int id, final String name) {
+            return session.createMutationQuery("UPDATE Student s SET s.name = :name WHERE s.id = :id")
+                    .setParameter("name", name)
+                    .setParameter("id", id)
+                    .executeUpdate();
+        }
+
+        @Override
+        int deleteById(final Session session, final int id) {
+            return session.createMutationQuery("DELETE FROM Student s WHERE s.id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+        }
+    },
+
+    CRITERIA {
+        @Override
+        Student getById(final Session session, final int id) {
+            final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            final JpaCriteriaQuery<Student> criteriaQuery = criteriaBuilder.createQuery(Student.class);
+            final JpaRoot<Student> root = criteriaQuery.from(Student.class);
+            criteriaQuery.select(root).where(criteriaBuilder.equal(root.get("id"), id));
+            return session.createQuery(criteriaQuery).uniqueResult();
+        }
+
+        @Override
+        List<Student> findAll(final Session session) {
+            final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            final JpaCriteriaQuery<Student> criteriaQuery = criteriaBuilder.createQuery(Student.class);
+            criteriaQuery.select(criteriaQuery.from(Student.class));
+            return session.createQuery(criteriaQuery).list();
+        }
+
+        @Override
+        List<Student> findPage(final Session session, final int firstResult, final int maxResults) {
+            final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            final JpaCriteriaQuery<Student> criteriaQuery = criteriaBuilder.createQuery(Student.class);
+            final JpaRoot<Student> root = criteriaQuery.from(Student.class);
+            criteriaQuery.select(root).orderBy(criteriaBuilder.asc(root.get("id")));
+            return session.createQuery(criteriaQuery)
+                    .setFirstResult(firstResult)
+                    .setMaxResults(maxResults)
+                    .list();
+        }
+
+        @Override
+        int updateNameById(final Session session, final int id, final String name) {
+            final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            final JpaCriteriaUpdate<Student> criteriaUpdate = criteriaBuilder.createCriteriaUpdate(Student.class);
+            final JpaRoot<Student> root = criteriaUpdate.from(Student.class);
+            criteriaUpdate.set("name", name);
+            criteriaUpdate.where(criteriaBuilder.equal(root.get("id"), id));
+            return session.createMutationQuery(criteriaUpdate).executeUpdate();
+        }
+
+        @Override
+        int deleteById(final Session session, final int id) {
+            final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            final JpaCriteriaDelete<Student> criteriaDelete = criteriaBuilder.createCriteriaDelete(Student.class);
+            final JpaRoot<Student> root = criteriaDelete.from(Student.class);
+            criteriaDelete.where(criteriaBuilder.equal(root.get("id"), id));
+            return session.createMutationQuery(criteriaDelete).executeUpdate();
+        }
+    },
+
+    NATIVE {
+        @Override
+        Student getById(final Session session, final int id) {
+            return session.createNativeQuery("SELECT * FROM student WHERE id = :id", Student.class)
+                    .setParameter("id", id)
+                    .uniqueResult();
+        }
+
+        @Override
+        List<Student> findAll(final Session session) {
+            return session.createNativeQuery("SELECT * FROM student", Student.class).list();
+        }
+
+        @Override
+        List<Student> findPage(final Session session, final int firstResult, final int maxResults) {
+            return session.createNativeQuery("SELECT * FROM student ORDER BY id", Student.class)
+                    .setFirstResult(firstResult)
+                    .setMaxResults(maxResults)
+                    .list();
+        }
+
+        @Override
+        int updateNameById(final Session session, final int id, final String name) {
+            return nativeMutation(session, "UPDATE student SET name = :name WHERE id = :id")
+                    .setParameter("name", name)
+                    .setParameter("id", id)
+                    .executeUpdate();
+        }
+
+        @Override
+        int deleteById(final Session session, final int id) {
+            return nativeMutation(session, "DELETE FROM student WHERE id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+        }
+
+        private NativeQuery<?> nativeMutation(final Session session, final String sql) {
+            final NativeQuery<?> nativeQuery = session.createNativeQuery(sql, Object.class);
+            nativeQuery.addSynchronizedEntityClass(Student.class);
+            return nativeQuery;
+        }
+    };
+
+    abstract Student getById(Session session, int id);
+
+    abstract List<Student> findAll(Session session);
+
+    abstract List<Student> findPage(Session session, int firstResult, int maxResults);
+
+    abstract int updateNameById(Session session, int id, String name);
+
+    abstract int deleteById(Session session, int id);
+
+}
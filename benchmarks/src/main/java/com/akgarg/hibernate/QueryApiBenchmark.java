@@ -0,0 +1,86 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of reads and bulk mutations through HQL, Criteria and native SQL, by table size.
+ * <p>
+ * Mutations run in a transaction which is rolled back, so the table keeps its size during the measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryApiBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000", "100000"})
+    private int tableSize;
+
+    @Param({"HQL", "CRITERIA", "NATIVE"})
+    private QueryApi api;
+
+    private EmbeddedStudentDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedStudentDatabase.create(tableSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Student getById() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return api.getById(session, database.randomId());
+        }
+    }
+
+    @Benchmark
+    public List<Student> findAll() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return api.findAll(session);
+        }
+    }
+
+    @Benchmark
+    public List<Student> findPage() {
+        final int firstResult = ThreadLocalRandom.current().nextInt(0, Math.max(1, tableSize - PAGE_SIZE));
+        try (Session session = database.sessionFactory().openSession()) {
+            return api.findPage(session, firstResult, PAGE_SIZE);
+        }
+    }
+
+    @Benchmark
+    public int bulkUpdate() {
+        try (Session session = database.sessionFactory().openSession()) {
+            session.beginTransaction();
+            final int updated = api.updateNameById(session, database.randomId(), "John Doe");
+            session.getTransaction().rollback();
+            return updated;
+        }
+    }
+
+    @Benchmark
+    public int bulkDelete() {
+        try (Session session = database.sessionFactory().openSession()) {
+            session.beginTransaction();
+            final int deleted = api.deleteById(session, database.randomId());
+            session.getTransaction().rollback();
+            return deleted;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.cfg.QuerySettings;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaRoot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of a criteria query built on every call and run on a second {@code EntityManager} (the former
+ * {@link CriteriaExample} pattern), built on every call and run on the session itself, and taken from
+ * {@link StudentQueries}. All three select the single student with the highest id, so query building dominates.
+ * <p>
+ * Run with {@code -prof gc} (the default in {@link BenchmarkRunner}) to compare the allocations per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryRegistryBenchmark {
+
+    private static final int TABLE_SIZE = 1_000;
+
+    @Param({"true", "false"})
+    private boolean planCacheEnabled;
+
+    private EmbeddedStudentDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = EmbeddedStudentDatabase.create(TABLE_SIZE, Map.of(QuerySettings.QUERY_PLAN_CACHE_ENABLED, planCacheEnabled));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Student> entityManagerPerCall() {
+        try (Session session = database.sessionFactory().openSession()) {
+            final EntityManager entityManager = session.getEntityManagerFactory().createEntityManager();
+            try {
+                return entityManager.createQuery(idGreaterThan(session.getCriteriaBuilder())).getResultList();
+            } finally {
+                entityManager.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Student> criteriaPerCall() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return session.createQuery(idGreaterThan(session.getCriteriaBuilder())).list();
+        }
+    }
+
+    @Benchmark
+    public List<Student> namedQuery() {
+        try (Session session = database.sessionFactory().openSession()) {
+            return StudentQueries.select(session, StudentQueries.FIND_BY_ID_GREATER_THAN)
+                    .setParameter("id", TABLE_SIZE - 1)
+                    .list();
+        }
+    }
+
+    private static JpaCriteriaQuery<Student> idGreaterThan(final HibernateCriteriaBuilder criteriaBuilder) {
+        final JpaCriteriaQuery<Student> criteriaQuery = criteriaBuilder.createQuery(Student.class);
+        final JpaRoot<Student> root = criteriaQuery.from(Student.class);
+        return criteriaQuery.select(root).where(criteriaBuilder.greaterThan(root.get("id"), TABLE_SIZE - 1));
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudents;
+
+/**
+ * Fans out reads through an {@link AsyncStudentRepository} over a small {@link ConnectionPool}, sends it a burst far
+ * larger than the pool and times out a slow operation, then logs the repository and pool metrics.
+ */
+public class AsyncRepositoryExample {
+
+    private static final Logger LOGGER = LogManager.getLogger(AsyncRepositoryExample.class);
+    private static final int TOTAL_NUMBER_OF_STUDENTS = 1_000;
+    private static final int BURST_SIZE = 5_000;
+
+    public static void main(String[] args) {
+        final PoolSettings poolSettings = PoolSettings.embedded("async_repository_example")
+                .withPoolSize(8, 8)
+                .withAcquireTimeout(Duration.ofSeconds(2));
+
+        try (ConnectionPool connectionPool = ConnectionPool.create(poolSettings);
+             SessionFactory sessionFactory = getSessionFactory(embeddedDatabaseSettings(connectionPool));
+             AsyncStudentRepository repository = AsyncStudentRepository.create(sessionFactory,
+                     AsyncStudentRepository.Options.forPool(connectionPool).withTimeout(Duration.ofSeconds(10)))) {
+            BulkInserter.insert(sessionFactory, syntheticStudents(TOTAL_NUMBER_OF_STUDENTS),
+                    BulkInserter.Options.defaults().withMode(BulkInserter.Mode.STATELESS));
+
+            // three independent reads run concurrently, the caller waits once for all of them
+            final CompletableFuture<Optional<Student>> first = repository.findById(1);
+            final CompletableFuture<List<Student>> some = repository.findByIds(List.of(10, 20, 30));
+            final CompletableFuture<Boolean> updated = repository.updateTeam(2, "Team async");
+            CompletableFuture.allOf(first, some, updated).join();
+            LOGGER.info("fan-out: first={}, some={}, updated={}", first.join(), some.join(), updated.join());
+
+            // the burst waits in the repository, the pool never has more than 8 waiting threads to serve; the reads
+            // bypass the second level cache, as cache hits would not need a connection at all
+            final List<CompletableFuture<Optional<Student>>> burst = new ArrayList<>(BURST_SIZE);
+            for (int i = 0; i < BURST_SIZE; i++) {
+                final int id = i % TOTAL_NUMBER_OF_STUDENTS + 1;
+                burst.add(repository.read(session -> {
+                    session.setCacheMode(CacheMode.IGNORE);
+                    return Optional.ofNullable(session.get(Student.class, id));
+                }));
+            }
+            LOGGER.info("during burst: {}", repository.metrics());
+            CompletableFuture.allOf(burst.toArray(CompletableFuture[]::new)).join();
+
+            // a per-call timeout shorter than the operation, the sleeping virtual thread is interrupted
+            final CompletableFuture<Long> slow = repository.<Long>read(session -> {
+                try {
+                    Thread.sleep(Duration.ofSeconds(5));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted", e);
+                }
+                return session.createSelectionQuery("SELECT count(s) FROM Student s", Long.class).getSingleResult();
+            }).orTimeout(100, TimeUnit.MILLISECONDS);
+            try {
+                slow.join();
+            } catch (CompletionException e) {
+                LOGGER.info("slow read failed: {}", e.getCause().toString());
+            }
+
+            LOGGER.info("repository after load: {}", repository.metrics());
+            LOGGER.info("connection acquire latency: {}, acquire timeouts: {}",
+                    connectionPool.metrics().acquireLatency(), connectionPool.metrics().acquireTimeouts());
+        }
+    }
+
+}
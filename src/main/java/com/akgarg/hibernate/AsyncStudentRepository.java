@@ -0,0 +1,289 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Non-blocking {@link Student} repository, every operation returns a {@link CompletableFuture} instead of blocking
+ * the caller, so independent reads can be fanned out and awaited together.
+ * <p>
+ * Each operation runs in its own session and transaction on its own virtual thread. At most
+ * {@link Options#maxConcurrency()} operations run at a time, which should not exceed the number of pooled connections
+ * ({@link Options#forPool(ConnectionPool)}): a burst then waits here, on a parked virtual thread, instead of piling up
+ * in the connection pool and running into its acquire timeout. At most {@link Options#maxQueued()} operations wait,
+ * further operations fail right away with a {@link RejectedExecutionException}.
+ * <p>
+ * An operation still running after {@link Options#timeout()} fails with a {@link TimeoutException}. A timed out or
+ * cancelled operation is dropped if it is still waiting, and its virtual thread is interrupted if it is running; its
+ * transaction is then rolled back, unless it was already committed. Returned students are detached.
+ */
+public final class AsyncStudentRepository implements AutoCloseable {
+
+    private final SessionFactory sessionFactory;
+    private final Options options;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private AsyncStudentRepository(final SessionFactory sessionFactory, final Options options) {
+        this.sessionFactory = sessionFactory;
+        this.options = options;
+        this.permits = new Semaphore(options.maxConcurrency(), true);
+    }
+
+    /**
+     * Repository running its operations on sessions of the given factory, which stays owned by the caller.
+     */
+    static AsyncStudentRepository create(final SessionFactory sessionFactory, final Options options) {
+        return new AsyncStudentRepository(sessionFactory, options);
+    }
+
+    CompletableFuture<Optional<Student>> findById(final int id) {
+        return read(session -> Optional.ofNullable(session.get(Student.class, id)));
+    }
+
+    /**
+     * Students with the given ids in the order of the ids, ids without a student are left out.
+     */
+    CompletableFuture<List<Student>> findByIds(final List<Integer> ids) {
+        return read(session -> MultiLoader.load(session, Student.class, ids, MultiLoader.Options.defaults().withMissing(MultiLoader.Missing.SKIP)));
+    }
+
+    CompletableFuture<List<Student>> findAll() {
+        return read(session -> StudentQueries.select(session, StudentQueries.FIND_ALL).list());
+    }
+
+    /**
+     * Persists the given student, the returned student is the same instance with its id assigned.
+     */
+    CompletableFuture<Student> persist(final Student student) {
+        return write(session -> {
+            session.persist(student);
+            return student;
+        });
+    }
+
+    /**
+     * @return whether a student with the given id existed
+     */
+    CompletableFuture<Boolean> updateTeam(final int id, final String team) {
+        return write(session -> {
+            final Student student = session.get(Student.class, id);
+            if (student == null) {
+                return false;
+            }
+            student.setTeam(team);
+            return true;
+        });
+    }
+
+    /**
+     * @return whether a student with the given id existed
+     */
+    CompletableFuture<Boolean> deleteById(final int id) {
+        return write(session -> StudentQueries.mutate(session, StudentQueries.DELETE_BY_ID)
+                .setParameter("id", id)
+                .executeUpdate() > 0);
+    }
+
+    /**
+     * Runs the given operation in a read-only session (see {@link ReadOnlySessions}).
+     */
+    <T> CompletableFuture<T> read(final Function<Session, T> operation) {
+        return submit(operation, true);
+    }
+
+    /**
+     * Runs the given operation in a regular session, its transaction is committed when the operation returns and
+     * rolled back when it throws.
+     */
+    <T> CompletableFuture<T> write(final Function<Session, T> operation) {
+        return submit(operation, false);
+    }
+
+    public Metrics metrics() {
+        return new Metrics(
+                queued.get(),
+                inFlight.get(),
+                options.maxConcurrency(),
+                succeeded.sum(),
+                failed.sum(),
+                timedOut.sum(),
+                cancelled.sum(),
+                rejected.sum(),
+                latency.snapshot()
+        );
+    }
+
+    /**
+     * Stops accepting operations and waits for the submitted ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private <T> CompletableFuture<T> submit(final Function<Session, T> operation, final boolean readOnly) {
+        if (queued.incrementAndGet() > options.maxQueued()) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "too many queued student operations, limit: " + options.maxQueued()));
+        }
+
+        final long submittedNanos = System.nanoTime();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicReference<Thread> runner = new AtomicReference<>();
+        try {
+            executor.execute(() -> run(operation, readOnly, result, runner));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        result.orTimeout(options.timeout().toNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete((value, failure) -> {
+            latency.record(System.nanoTime() - submittedNanos);
+            if (failure == null) {
+                succeeded.increment();
+                return;
+            }
+            if (failure instanceof TimeoutException) {
+                timedOut.increment();
+            } else if (failure instanceof CancellationException) {
+                cancelled.increment();
+            } else {
+                failed.increment();
+            }
+            // no-op once the operation has returned, the virtual thread is about to end
+            final Thread thread = runner.get();
+            if (thread != null) {
+                thread.interrupt();
+            }
+        });
+        return result;
+    }
+
+    private <T> void run(final Function<Session, T> operation,
+                         final boolean readOnly,
+                         final CompletableFuture<T> result,
+                         final AtomicReference<Thread> runner) {
+        // published before the done check, so a timeout or cancellation from now on interrupts the wait below
+        runner.set(Thread.currentThread());
+        try {
+            if (result.isDone()) {
+                return;
+            }
+            permits.acquire();
+        } catch (InterruptedException e) {
+            return;
+        } finally {
+            queued.decrementAndGet();
+        }
+
+        inFlight.incrementAndGet();
+        try (Session session = readOnly ? ReadOnlySessions.open(sessionFactory) : sessionFactory.openSession()) {
+            if (result.isDone()) {
+                return;
+            }
+            session.beginTransaction();
+            try {
+                final T value = operation.apply(session);
+                session.getTransaction().commit();
+                result.complete(value);
+            } catch (RuntimeException e) {
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        } finally {
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * @param maxConcurrency maximum number of operations running at the same time, at most the connection pool size
+     * @param maxQueued      maximum number of operations waiting to run, operations beyond it are rejected
+     * @param timeout        time after which an operation fails with a {@link TimeoutException}, counted from its
+     *                       submission so it includes the time spent queued
+     */
+    public record Options(int maxConcurrency, int maxQueued, Duration timeout) {
+
+        public Options {
+            if (maxConcurrency < 1 || maxQueued < 0) {
+                throw new IllegalArgumentException("invalid limits: maxConcurrency=" + maxConcurrency + ", maxQueued=" + maxQueued);
+            }
+            if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+        }
+
+        /**
+         * As many concurrent operations as the pool has connections.
+         */
+        public static Options forPool(final ConnectionPool connectionPool) {
+            return new Options(connectionPool.maximumPoolSize(), 10_000, Duration.ofSeconds(30));
+        }
+
+        public Options withMaxQueued(final int maxQueued) {
+            return new Options(maxConcurrency, maxQueued, timeout);
+        }
+
+        public Options withTimeout(final Duration timeout) {
+            return new Options(maxConcurrency, maxQueued, timeout);
+        }
+
+    }
+
+    /**
+     * @param queued         operations waiting for one of the {@code maxConcurrency} slots
+     * @param inFlight       operations currently running
+     * @param maxConcurrency maximum number of operations running at the same time
+     * @param succeeded      operations which completed normally
+     * @param failed         operations which threw
+     * @param timedOut       operations which did not complete within the timeout
+     * @param cancelled      operations cancelled by the caller
+     * @param rejected       operations rejected because the queue was full or the repository closed
+     * @param latency        time from submission to completion, of all completed operations
+     */
+    public record Metrics(int queued,
+                          int inFlight,
+                          int maxConcurrency,
+                          long succeeded,
+                          long failed,
+                          long timedOut,
+                          long cancelled,
+                          long rejected,
+                          LatencyHistogram.Snapshot latency) {
+    }
+
+}
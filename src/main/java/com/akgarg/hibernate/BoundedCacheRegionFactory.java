@@ -0,0 +1,117 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process second level cache, every entity, collection and query results region is kept in a size bounded
+ * {@link BoundedStorageAccess}.
+ * <p>
+ * Bounds are configured with the {@code cache.bounded.*} settings, either for all regions or per region by
+ * inserting the region name, e.g. {@code cache.bounded.region.com.akgarg.hibernate.entity.Student.max_entries}.
+ * The timestamps region is never bounded: losing an entry there would let the query cache serve stale results.
+ */
+public class BoundedCacheRegionFactory extends RegionFactoryTemplate {
+
+    public static final String MAX_ENTRIES = "cache.bounded.max_entries";
+    public static final String TIME_TO_LIVE_SECONDS = "cache.bounded.time_to_live_seconds";
+    public static final String REGION_PREFIX = "cache.bounded.region.";
+
+    private static final long serialVersionUID = 1L;
+    private static final long DEFAULT_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 600;
+
+    private final transient Map<String, BoundedStorageAccess> storages = new ConcurrentHashMap<>();
+    private transient Map<String, Object> configValues = Map.of();
+
+    /**
+     * Region factory the given session factory was built with.
+     *
+     * @throws IllegalStateException if the session factory does not use this region factory
+     */
+    static BoundedCacheRegionFactory of(final SessionFactory sessionFactory) {
+        final RegionFactory regionFactory = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getRegionFactory();
+        if (regionFactory instanceof BoundedCacheRegionFactory boundedCacheRegionFactory) {
+            return boundedCacheRegionFactory;
+        }
+        throw new IllegalStateException("session factory uses " + regionFactory.getClass().getName() + " as region factory");
+    }
+
+    @Override
+    protected void prepareForUse(final SessionFactoryOptions settings, final Map<String, Object> configValues) {
+        this.configValues = new HashMap<>(configValues);
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        storages.values().forEach(BoundedStorageAccess::release);
+        storages.clear();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(final DomainDataRegionConfig regionConfig,
+                                                                    final DomainDataRegionBuildingContext buildingContext) {
+        return boundedStorage(regionConfig.getRegionName());
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(final String regionName,
+                                                                  final SessionFactoryImplementor sessionFactory) {
+        return boundedStorage(regionName);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(final String regionName,
+                                                                final SessionFactoryImplementor sessionFactory) {
+        return register(new BoundedStorageAccess(regionName, 0, Duration.ZERO));
+    }
+
+    /**
+     * Counters of every region built so far, sorted by region name.
+     */
+    public Map<String, BoundedStorageAccess.RegionStatistics> regionStatistics() {
+        final Map<String, BoundedStorageAccess.RegionStatistics> statistics = new TreeMap<>();
+        storages.forEach((regionName, storage) -> statistics.put(regionName, storage.statistics()));
+        return statistics;
+    }
+
+    private BoundedStorageAccess boundedStorage(final String regionName) {
+        final long maxEntries = longSetting(REGION_PREFIX + regionName + ".max_entries",
+                longSetting(MAX_ENTRIES, DEFAULT_MAX_ENTRIES));
+        final long timeToLiveSeconds = longSetting(REGION_PREFIX + regionName + ".time_to_live_seconds",
+                longSetting(TIME_TO_LIVE_SECONDS, DEFAULT_TIME_TO_LIVE_SECONDS));
+        return register(new BoundedStorageAccess(regionName, maxEntries, Duration.ofSeconds(timeToLiveSeconds)));
+    }
+
+    private BoundedStorageAccess register(final BoundedStorageAccess storage) {
+        storages.put(storage.regionName(), storage);
+        return storage;
+    }
+
+    private long longSetting(final String name, final long defaultValue) {
+        final Object value = configValues.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        return Long.parseLong(value.toString().trim());
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.akgarg.hibernate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Storage of one second level cache region, backed by a size bounded Caffeine cache with an optional time to live.
+ * Counts hits, misses, puts and evictions of the region.
+ */
+final class BoundedStorageAccess implements DomainDataStorageAccess {
+
+    private final String regionName;
+    private final long maxEntries;
+    private final Duration timeToLive;
+    private final Cache<Object, Object> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries maximum number of entries, {@code <= 0} means unbounded
+     * @param timeToLive time after which an entry expires once written, zero means entries never expire
+     */
+    BoundedStorageAccess(final String regionName, final long maxEntries, final Duration timeToLive) {
+        this.regionName = regionName;
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+
+        final Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .evictionListener((key, value, cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                });
+        if (maxEntries > 0) {
+            builder.maximumSize(maxEntries);
+        }
+        if (!timeToLive.isZero()) {
+            builder.expireAfterWrite(timeToLive);
+        }
+        this.cache = builder.build();
+    }
+
+    @Override
+    public Object getFromCache(final Object key, final SharedSessionContractImplementor session) {
+        final Object value = cache.getIfPresent(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public void putIntoCache(final Object key, final Object value, final SharedSessionContractImplementor session) {
+        puts.increment();
+        cache.put(key, value);
+    }
+
+    @Override
+    public boolean contains(final Object key) {
+        return cache.asMap().containsKey(key);
+    }
+
+    @Override
+    public void evictData() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void evictData(final Object key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void release() {
+        cache.invalidateAll();
+        cache.cleanUp();
+    }
+
+    String regionName() {
+        return regionName;
+    }
+
+    RegionStatistics statistics() {
+        cache.cleanUp();
+        return new RegionStatistics(
+                regionName,
+                maxEntries,
+                timeToLive,
+                cache.estimatedSize(),
+                hits.sum(),
+                misses.sum(),
+                puts.sum(),
+                evictions.sum()
+        );
+    }
+
+    /**
+     * Counters of one region, {@code evictions} only counts entries removed because of the size bound or the time to
+     * live, not explicit invalidations.
+     */
+    public record RegionStatistics(String regionName,
+                                   long maxEntries,
+                                   Duration timeToLive,
+                                   long size,
+                                   long hits,
+                                   long misses,
+                                   long puts,
+                                   long evictions) {
+
+        public double hitRatio() {
+            final long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Bulk load path for {@link Student} rows.
+ * <p>
+ * Rows are written with JDBC batching (inserts are ordered by hibernate so that one batch only contains one
+ * statement), one transaction is committed per chunk and the persistence context is flushed and cleared every
+ * {@link Options#clearEvery()} rows so that memory does not grow with the number of inserted rows.
+ * A {@link StatelessSession} mode skips the persistence context completely.
+ */
+public final class BulkInserter {
+
+    private BulkInserter() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Inserts all students returned by the iterator in a new session (or stateless session) opened from the given
+     * session factory.
+     */
+    static Result insert(final SessionFactory sessionFactory, final Iterator<Student> students, final Options options) {
+        if (options.mode() == Mode.STATELESS) {
+            try (StatelessSession statelessSession = sessionFactory.openStatelessSession()) {
+                return insert(statelessSession, students, options);
+            }
+        }
+
+        try (Session session = sessionFactory.openSession()) {
+            return insert(session, students, options);
+        }
+    }
+
+    /**
+     * Inserts all students returned by the iterator using the given session. The session is cleared every
+     * {@link Options#clearEvery()} rows, so entities which were managed by it before the call get detached.
+     */
+    static Result insert(final Session session, final Iterator<Student> students, final Options options) {
+        final long startNanos = System.nanoTime();
+        final Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(options.batchSize());
+
+        long rows = 0;
+        long chunks = 0;
+        Transaction transaction = session.beginTransaction();
+
+        try {
+            while (students.hasNext()) {
+                session.persist(students.next());
+                rows++;
+
+                if (rows % options.chunkSize() == 0) {
+                    transaction.commit();
+                    session.clear();
+                    chunks++;
+                    transaction = session.beginTransaction();
+                } else if (rows % options.clearEvery() == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+
+            transaction.commit();
+            session.clear();
+            if (rows % options.chunkSize() != 0) {
+                chunks++;
+            }
+        } catch (RuntimeException e) {
+            rollbackQuietly(transaction, e);
+            throw e;
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+
+        return new Result(rows, chunks, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Inserts all students returned by the iterator using the given stateless session, no persistence context is
+     * involved so there is nothing to be cleared.
+     */
+    static Result insert(final StatelessSession statelessSession, final Iterator<Student> students, final Options options) {
+        return insert(statelessSession, students, options, committedRows -> {
+        });
+    }
+
+    /**
+     * Inserts all students returned by the iterator using the given stateless session and passes the number of rows
+     * of each chunk to {@code onCommit} once the chunk is committed.
+     */
+    static Result insert(final StatelessSession statelessSession,
+                         final Iterator<Student> students,
+                         final Options options,
+                         final LongConsumer onCommit) {
+        final long startNanos = System.nanoTime();
+        statelessSession.setJdbcBatchSize(options.batchSize());
+
+        long rows = 0;
+        long chunks = 0;
+        Transaction transaction = statelessSession.beginTransaction();
+
+        try {
+            while (students.hasNext()) {
+                statelessSession.insert(students.next());
+                rows++;
+
+                if (rows % options.chunkSize() == 0) {
+                    transaction.commit();
+                    onCommit.accept(options.chunkSize());
+                    chunks++;
+                    transaction = statelessSession.beginTransaction();
+                }
+            }
+
+            transaction.commit();
+            if (rows % options.chunkSize() != 0) {
+                onCommit.accept(rows % options.chunkSize());
+                chunks++;
+            }
+        } catch (RuntimeException e) {
+            rollbackQuietly(transaction, e);
+            throw e;
+        }
+
+        return new Result(rows, chunks, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    private static void rollbackQuietly(final Transaction transaction, final RuntimeException cause) {
+        try {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        } catch (RuntimeException rollbackException) {
+            cause.addSuppressed(rollbackException);
+        }
+    }
+
+    public enum Mode {
+        /**
+         * regular session, entities are managed until the next flush/clear
+         */
+        SESSION,
+
+        /**
+         * stateless session, entities are never managed and no snapshots are taken
+         */
+        STATELESS
+    }
+
+    /**
+     * @param batchSize  JDBC batch size, number of inserts sent to the database in one round-trip
+     * @param chunkSize  number of rows committed in one transaction
+     * @param clearEvery number of rows after which the persistence context is flushed and cleared, ignored in
+     *                   {@link Mode#STATELESS} mode
+     * @param mode       kind of session used for the inserts
+     */
+    public record Options(int batchSize, int chunkSize, int clearEvery, Mode mode) {
+
+        public Options {
+            if (batchSize < 1 || chunkSize < 1 || clearEvery < 1) {
+                throw new IllegalArgumentException("batchSize, chunkSize and clearEvery must be positive");
+            }
+            if (mode == null) {
+                throw new IllegalArgumentException("mode must not be null");
+            }
+        }
+
+        public static Options defaults() {
+            return new Options(HConf.DEFAULT_BATCH_SIZE, 1_000, HConf.DEFAULT_BATCH_SIZE, Mode.SESSION);
+        }
+
+        public Options withMode(final Mode mode) {
+            return new Options(batchSize, chunkSize, clearEvery, mode);
+        }
+
+        public Options withChunkSize(final int chunkSize) {
+            return new Options(batchSize, chunkSize, clearEvery, mode);
+        }
+
+        public Options withBatchSize(final int batchSize) {
+            return new Options(batchSize, chunkSize, clearEvery, mode);
+        }
+
+    }
+
+    public record Result(long rows, long chunks, Duration elapsed) {
+
+        public double rowsPerSecond() {
+            final long nanos = Math.max(1, elapsed.toNanos());
+            return rows * 1_000_000_000.0 / nanos;
+        }
+
+    }
+
+}
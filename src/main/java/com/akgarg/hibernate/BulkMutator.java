@@ -0,0 +1,253 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.MutationQuery;
+import org.hibernate.query.NativeQuery;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk update, delete and upsert of {@link Student} rows by id.
+ * <p>
+ * The ids are split into chunks of at most {@link Options#maxInListSize()}, one {@code IN} list statement per chunk.
+ * Hibernate pads every {@code IN} list to the next power of two ({@code hibernate.query.in_clause_parameter_padding},
+ * set by {@link HConf}), so whatever the number of ids only {@code log2(maxInListSize) + 1} different update or delete
+ * statements are ever generated and the statement and query plan caches stay warm. Upserts are not padded, a key
+ * repeated in one statement fails on PostgreSQL and is counted twice on MySQL. Chunks are committed as configured by
+ * {@link TransactionScope}.
+ * <p>
+ * Bulk statements bypass the persistence context: managed students are not updated, and hibernate evicts the whole
+ * student cache region after each statement.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public final class BulkMutator {
+
+    private BulkMutator() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Sets the given attributes on all students with the given ids.
+     *
+     * @param assignments new value per {@link Student} attribute name
+     */
+    static Result update(final Session session,
+                         final Collection<Integer> ids,
+                         final Map<String, Object> assignments,
+                         final Options options) {
+        if (assignments.isEmpty()) {
+            throw new IllegalArgumentException("at least one assignment is required");
+        }
+
+        final StringBuilder hql = new StringBuilder("UPDATE Student s SET ");
+        final Map<String, Object> parameters = new LinkedHashMap<>();
+        for (final Map.Entry<String, Object> assignment : assignments.entrySet()) {
+            // also makes sure that only attribute names end up in the statement
+            final String attribute = session.getMetamodel().entity(Student.class).getAttribute(assignment.getKey()).getName();
+            if (!parameters.isEmpty()) {
+                hql.append(", ");
+            }
+            hql.append("s.").append(attribute).append(" = :").append(attribute);
+            parameters.put(attribute, assignment.getValue());
+        }
+        hql.append(" WHERE s.id IN :ids");
+
+        return inChunks(session, ids, options, chunk -> {
+            final MutationQuery query = session.createMutationQuery(hql.toString());
+            parameters.forEach(query::setParameter);
+            return query.setParameterList("ids", chunk).executeUpdate();
+        });
+    }
+
+    /**
+     * Deletes all students with the given ids.
+     */
+    static Result delete(final Session session, final Collection<Integer> ids, final Options options) {
+        return inChunks(session, ids, options, chunk -> session.createMutationQuery("DELETE FROM Student s WHERE s.id IN :ids")
+                .setParameterList("ids", chunk)
+                .executeUpdate());
+    }
+
+    /**
+     * Inserts the given students, or updates name and team of those whose id already exists, with multi-row native
+     * statements of at most {@link Options#maxInListSize()} rows. Ids have to be assigned by the caller.
+     *
+     * @throws UnsupportedOperationException if the database is neither H2, MySQL nor PostgreSQL
+     */
+    static Result upsert(final Session session, final List<Student> students, final Options options) {
+        for (final Student student : students) {
+            if (student.getId() <= 0) {
+                throw new IllegalArgumentException("upserted students need an id: " + student);
+            }
+        }
+
+        final Dialect dialect = ((SessionFactoryImplementor) session.getSessionFactory()).getJdbcServices().getDialect();
+        return inChunks(session, students, options, chunk -> {
+            final String sql = upsertStatement(dialect, chunk.size());
+            final NativeQuery<?> query = session.createNativeQuery(sql, Object.class);
+            // lets hibernate invalidate only what depends on the student table
+            query.addSynchronizedEntityClass(Student.class);
+            for (int i = 0; i < chunk.size(); i++) {
+                final Student student = chunk.get(i);
+                query.setParameter("id" + i, student.getId());
+                query.setParameter("name" + i, student.getName());
+                query.setParameter("team" + i, student.getTeam());
+            }
+            return query.executeUpdate();
+        });
+    }
+
+    private static String upsertStatement(final Dialect dialect, final int rows) {
+        final StringBuilder values = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append("(:id").append(i).append(", :name").append(i).append(", :team").append(i).append(')');
+        }
+
+        if (dialect instanceof H2Dialect) {
+            return "MERGE INTO student (id, name, team) KEY (id) VALUES " + values;
+        }
+        if (dialect instanceof MySQLDialect) {
+            return "INSERT INTO student (id, name, team) VALUES " + values
+                    + " ON DUPLICATE KEY UPDATE name = VALUES(name), team = VALUES(team)";
+        }
+        if (dialect instanceof PostgreSQLDialect) {
+            return "INSERT INTO student (id, name, team) VALUES " + values
+                    + " ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, team = EXCLUDED.team";
+        }
+        throw new UnsupportedOperationException("no native upsert for " + dialect.getClass().getSimpleName());
+    }
+
+    private static <T> Result inChunks(final Session session,
+                                       final Collection<T> values,
+                                       final Options options,
+                                       final ChunkStatement<T> statement) {
+        final long startNanos = System.nanoTime();
+        final List<T> remaining = List.copyOf(values);
+        final boolean ownTransaction = options.transactionScope() != TransactionScope.EXISTING;
+        if (!ownTransaction && !session.getTransaction().isActive()) {
+            throw new IllegalStateException("transaction scope " + TransactionScope.EXISTING + " requires an active transaction");
+        }
+
+        long rows = 0;
+        long statements = 0;
+        Transaction transaction = ownTransaction ? session.beginTransaction() : session.getTransaction();
+        try {
+            for (int from = 0; from < remaining.size(); from += options.maxInListSize()) {
+                final List<T> chunk = remaining.subList(from, Math.min(from + options.maxInListSize(), remaining.size()));
+                rows += statement.execute(chunk);
+                statements++;
+
+                final boolean lastChunk = from + options.maxInListSize() >= remaining.size();
+                if (options.transactionScope() == TransactionScope.PER_CHUNK && !lastChunk) {
+                    transaction.commit();
+                    transaction = session.beginTransaction();
+                }
+            }
+            if (ownTransaction) {
+                transaction.commit();
+            }
+        } catch (RuntimeException e) {
+            if (ownTransaction) {
+                rollbackQuietly(transaction, e);
+            }
+            throw e;
+        }
+
+        return new Result(remaining.size(), rows, statements, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    private static void rollbackQuietly(final Transaction transaction, final RuntimeException cause) {
+        try {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        } catch (RuntimeException rollbackException) {
+            cause.addSuppressed(rollbackException);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkStatement<T> {
+        int execute(List<T> chunk);
+    }
+
+    public enum TransactionScope {
+        /**
+         * one transaction per chunk, chunks committed before a failure stay committed
+         */
+        PER_CHUNK,
+
+        /**
+         * one transaction for all chunks
+         */
+        SINGLE,
+
+        /**
+         * the caller's active transaction, which is neither committed nor rolled back
+         */
+        EXISTING
+    }
+
+    /**
+     * @param maxInListSize    maximum number of ids per statement (rows per statement for upserts), a power of two
+     *                         so that padded {@code IN} lists never grow beyond it
+     * @param transactionScope how chunks are grouped into transactions
+     */
+    public record Options(int maxInListSize, TransactionScope transactionScope) {
+
+        public Options {
+            if (maxInListSize < 1 || Integer.bitCount(maxInListSize) != 1) {
+                throw new IllegalArgumentException("maxInListSize must be a positive power of two: " + maxInListSize);
+            }
+            if (transactionScope == null) {
+                throw new IllegalArgumentException("transactionScope must not be null");
+            }
+        }
+
+        /**
+         * 512 ids per statement stays below the 1000 elements Oracle allows in an {@code IN} list.
+         */
+        public static Options defaults() {
+            return new Options(512, TransactionScope.PER_CHUNK);
+        }
+
+        public Options withMaxInListSize(final int maxInListSize) {
+            return new Options(maxInListSize, transactionScope);
+        }
+
+        public Options withTransactionScope(final TransactionScope transactionScope) {
+            return new Options(maxInListSize, transactionScope);
+        }
+
+    }
+
+    /**
+     * @param requested  number of ids (or students) passed in
+     * @param rows       rows reported as affected by the database
+     * @param statements number of statements executed
+     * @param elapsed    time taken by all chunks
+     */
+    public record Result(long requested, long rows, long statements, Duration elapsed) {
+
+        public double rowsPerSecond() {
+            final long nanos = Math.max(1, elapsed.toNanos());
+            return requested * 1_000_000_000.0 / nanos;
+        }
+
+    }
+
+}
@@ -5,34 +5,65 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.StatisticsSettings;
+import org.hibernate.stat.Statistics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import static com.akgarg.hibernate.HConf.getSessionFactory;
-import static com.akgarg.hibernate.HibernateUtils.saveStudents;
+import static com.akgarg.hibernate.HibernateUtils.insertStudentsAndClear;
 
 public class CacheExample {
 
     private static final int TOTAL_NUMBER_OF_STUDENTS = 10;
+    private static final int NUMBER_OF_READING_SESSIONS = 5;
     private static final Logger LOGGER = LogManager.getLogger(CacheExample.class);
 
     public static void main(String[] args) {
-        final SessionFactory sessionFactory = getSessionFactory();
+        final SessionFactory sessionFactory = getSessionFactory(Map.of(StatisticsSettings.GENERATE_STATISTICS, true));
 
         final Session session = sessionFactory.openSession();
-        saveStudents(session, TOTAL_NUMBER_OF_STUDENTS);
+        insertStudentsAndClear(session, TOTAL_NUMBER_OF_STUDENTS);
         session.close();
 
+        // inserted students are put into the second level cache on commit, start from a cold cache instead
+        sessionFactory.getCache().evictAllRegions();
+        final Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
         final Session session1 = sessionFactory.openSession();
-        LOGGER.info("s1 -> Student by id={}: {}", 1, session1.get(Student.class, 1));
-        LOGGER.info("s1 -> Student by id={}: {}", 1, session1.get(Student.class, 1));
+        LOGGER.info("s1 -> Student by id={}: {}", 1, session1.get(Student.class, 1));  // second level cache miss, loaded from database
+        LOGGER.info("s1 -> Student by id={}: {}", 1, session1.get(Student.class, 1));  // first level cache
         session1.close();
 
         final Session session2 = sessionFactory.openSession();
-        LOGGER.info("s2 -> Student by id={}: {}", 1, session2.get(Student.class, 1));
-        LOGGER.info("s2 -> Student by id={}: {}", 1, session2.get(Student.class, 1));
+        LOGGER.info("s2 -> Student by id={}: {}", 1, session2.get(Student.class, 1));  // second level cache hit
+        LOGGER.info("s2 -> Student by id={}: {}", 1, session2.get(Student.class, 1));  // first level cache
         session2.close();
 
-        LOGGER.info("Second level cache hit count: {}", sessionFactory.getStatistics().getSecondLevelCacheHitCount());
-        LOGGER.info("Second level cache miss count: {}", sessionFactory.getStatistics().getSecondLevelCacheMissCount());
+        // every session reads all students, only the first session has to go to the database, with a single select
+        final List<Integer> studentIds = IntStream.rangeClosed(1, TOTAL_NUMBER_OF_STUDENTS).boxed().toList();
+        for (int i = 0; i < NUMBER_OF_READING_SESSIONS; i++) {
+            final Session readingSession = sessionFactory.openSession();
+            MultiLoader.load(readingSession, Student.class, studentIds, MultiLoader.Options.defaults());
+            readingSession.close();
+        }
+
+        final long hitCount = statistics.getSecondLevelCacheHitCount();
+        final long missCount = statistics.getSecondLevelCacheMissCount();
+        LOGGER.info("Second level cache hit count: {}", hitCount);
+        LOGGER.info("Second level cache miss count: {}", missCount);
+        LOGGER.info("Second level cache hit ratio: {}", String.format("%.2f", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount)));
+
+        // every second level cache hit is a select which did not have to be sent to the database
+        LOGGER.info("Database round-trips: {}, saved by second level cache: {}", statistics.getPrepareStatementCount(), hitCount);
+
+        BoundedCacheRegionFactory.of(sessionFactory)
+                .regionStatistics()
+                .values()
+                .forEach(regionStatistics -> LOGGER.info("Cache region: {}", regionStatistics));
 
         sessionFactory.close();
     }
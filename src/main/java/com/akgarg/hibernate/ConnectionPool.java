@@ -0,0 +1,170 @@
+package com.akgarg.hibernate;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.hibernate.cfg.JdbcSettings;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Production grade JDBC connection pool (HikariCP) to be used instead of hibernate's built-in pool, together with
+ * live gauges of its state.
+ * <p>
+ * Pass {@link #hibernateSettings()} to {@link HConf#getSessionFactory(Map)} to make hibernate take its connections
+ * from the pool. The pool is owned by the caller and has to be closed after the session factory.
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final HikariDataSource dataSource;
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final LatencyHistogram usageLatency = new LatencyHistogram();
+    private final LongAdder acquireTimeouts = new LongAdder();
+
+    private ConnectionPool(final PoolSettings settings) {
+        final HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName("student-pool-" + POOL_COUNTER.incrementAndGet());
+        hikariConfig.setJdbcUrl(settings.jdbcUrl());
+        hikariConfig.setUsername(settings.username());
+        hikariConfig.setPassword(settings.password());
+        hikariConfig.setMinimumIdle(settings.minimumIdle());
+        hikariConfig.setMaximumPoolSize(settings.maximumPoolSize());
+        hikariConfig.setConnectionTimeout(settings.acquireTimeout().toMillis());
+        hikariConfig.setLeakDetectionThreshold(settings.leakDetectionThreshold().toMillis());
+        // hibernate is told that connections come with auto-commit disabled, which saves a round-trip per transaction
+        hikariConfig.setAutoCommit(false);
+        hikariConfig.setMetricsTrackerFactory(new HistogramMetricsTrackerFactory());
+        applyStatementCache(hikariConfig, settings);
+
+        this.dataSource = new HikariDataSource(hikariConfig);
+    }
+
+    public static ConnectionPool create(final PoolSettings settings) {
+        return new ConnectionPool(settings);
+    }
+
+    /**
+     * HikariCP does not cache statements itself, the cache has to be enabled in the driver.
+     */
+    private static void applyStatementCache(final HikariConfig hikariConfig, final PoolSettings settings) {
+        if (settings.statementCacheSize() == 0) {
+            return;
+        }
+
+        final String cacheSize = String.valueOf(settings.statementCacheSize());
+        if (settings.jdbcUrl().startsWith("jdbc:mysql:")) {
+            hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+            hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+            hikariConfig.addDataSourceProperty("prepStmtCacheSize", cacheSize);
+            hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        } else if (settings.jdbcUrl().startsWith("jdbc:h2:")) {
+            hikariConfig.addDataSourceProperty("QUERY_CACHE_SIZE", cacheSize);
+        }
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Settings making hibernate use this pool, JDBC url and credentials configured in {@link HConf} are ignored.
+     */
+    public Map<String, Object> hibernateSettings() {
+        return Map.of(
+                JdbcSettings.JAKARTA_NON_JTA_DATASOURCE, dataSource,
+                JdbcSettings.CONNECTION_PROVIDER_DISABLES_AUTOCOMMIT, true
+        );
+    }
+
+    public Metrics metrics() {
+        final HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return new Metrics(
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getThreadsAwaitingConnection(),
+                pool.getTotalConnections(),
+                acquireTimeouts.sum(),
+                acquireLatency.snapshot(),
+                usageLatency.snapshot()
+        );
+    }
+
+    /**
+     * Connections currently handed out, cheaper than {@link #metrics()} when only the load is needed.
+     */
+    int activeConnections() {
+        return dataSource.getHikariPoolMXBean().getActiveConnections();
+    }
+
+    /**
+     * Maximum number of open connections, idle plus in use.
+     */
+    int maximumPoolSize() {
+        return dataSource.getMaximumPoolSize();
+    }
+
+    /**
+     * Clears the latency histograms and the acquire timeout count, e.g. to leave out a warm-up phase.
+     */
+    public void resetMetrics() {
+        acquireLatency.reset();
+        usageLatency.reset();
+        acquireTimeouts.reset();
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+
+    /**
+     * @param active          connections currently handed out
+     * @param idle            connections open but not in use
+     * @param pendingWaiters  threads blocked waiting for a connection
+     * @param total           open connections
+     * @param acquireTimeouts number of acquisitions which failed because of the acquire timeout
+     * @param acquireLatency  time spent waiting for a connection
+     * @param usageLatency    time a connection was held before being returned to the pool
+     */
+    public record Metrics(int active,
+                          int idle,
+                          int pendingWaiters,
+                          int total,
+                          long acquireTimeouts,
+                          LatencyHistogram.Snapshot acquireLatency,
+                          LatencyHistogram.Snapshot usageLatency) {
+    }
+
+    private final class HistogramMetricsTrackerFactory implements MetricsTrackerFactory {
+
+        @Override
+        public IMetricsTracker create(final String poolName, final PoolStats poolStats) {
+            return new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(final long elapsedAcquiredNanos) {
+                    acquireLatency.record(elapsedAcquiredNanos);
+                }
+
+                @Override
+                public void recordConnectionUsageMillis(final long elapsedBorrowedMillis) {
+                    usageLatency.record(elapsedBorrowedMillis * 1_000_000);
+                }
+
+                @Override
+                public void recordConnectionTimeout() {
+                    acquireTimeouts.increment();
+                }
+            };
+        }
+
+    }
+
+}
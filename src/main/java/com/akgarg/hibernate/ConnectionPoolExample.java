@@ -0,0 +1,87 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+import static com.akgarg.hibernate.HibernateUtils.insertStudentsAndClear;
+
+/**
+ * Runs many concurrent sessions against an in-memory H2 database through a small {@link ConnectionPool} and logs
+ * the pool gauges while the load is running.
+ * <p>
+ * The reads bypass the second level cache, otherwise nearly all of them would be cache hits and never borrow a
+ * connection.
+ */
+public class ConnectionPoolExample {
+
+    private static final Logger LOGGER = LogManager.getLogger(ConnectionPoolExample.class);
+    private static final int TOTAL_NUMBER_OF_STUDENTS = 100;
+    private static final int CONCURRENT_TASKS = 200;
+    private static final int READS_PER_TASK = 50;
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        final PoolSettings poolSettings = PoolSettings.embedded("connection_pool_example")
+                .withPoolSize(2, 8)
+                .withAcquireTimeout(Duration.ofSeconds(5))
+                .withLeakDetectionThreshold(Duration.ofSeconds(10));
+
+        try (ConnectionPool connectionPool = ConnectionPool.create(poolSettings);
+             SessionFactory sessionFactory = getSessionFactory(embeddedDatabaseSettings(connectionPool))) {
+
+            final Session session = sessionFactory.openSession();
+            insertStudentsAndClear(session, TOTAL_NUMBER_OF_STUDENTS);
+            session.close();
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                final List<Future<?>> tasks = new ArrayList<>(CONCURRENT_TASKS);
+                for (int i = 0; i < CONCURRENT_TASKS; i++) {
+                    tasks.add(executor.submit(() -> readStudents(sessionFactory)));
+                }
+
+                for (int i = 0; i < 5; i++) {
+                    LOGGER.info("pool while running: {}", connectionPool.metrics());
+                    Thread.sleep(50);
+                }
+
+                // rethrows the failure of the first failed task
+                for (final Future<?> task : tasks) {
+                    task.get();
+                }
+            }
+
+            final ConnectionPool.Metrics metrics = connectionPool.metrics();
+            LOGGER.info("pool after load: active={}, idle={}, pending={}, total={}, acquireTimeouts={}",
+                    metrics.active(), metrics.idle(), metrics.pendingWaiters(), metrics.total(), metrics.acquireTimeouts());
+            LOGGER.info("connection acquire latency: {}", metrics.acquireLatency());
+            LOGGER.info("connection usage latency: {}", metrics.usageLatency());
+        }
+    }
+
+    private static void readStudents(final SessionFactory sessionFactory) {
+        for (int i = 0; i < READS_PER_TASK; i++) {
+            try (Session session = sessionFactory.openSession()) {
+                session.setCacheMode(CacheMode.IGNORE);
+                final int studentId = ThreadLocalRandom.current().nextInt(1, TOTAL_NUMBER_OF_STUDENTS + 1);
+                session.beginTransaction();
+                session.get(Student.class, studentId);
+                session.getTransaction().commit();
+            }
+        }
+    }
+
+}
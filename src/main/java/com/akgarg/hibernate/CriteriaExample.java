@@ -1,20 +1,17 @@
 package com.akgarg.hibernate;
 
 import com.akgarg.hibernate.entity.Student;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.Query;
-import jakarta.persistence.TypedQuery;
-import jakarta.persistence.criteria.CriteriaQuery;
-import jakarta.persistence.criteria.Root;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.query.MutationQuery;
-import org.hibernate.query.criteria.*;
+import org.hibernate.cfg.StatisticsSettings;
+
+import java.util.HashMap;
+import java.util.Map;
 
 import static com.akgarg.hibernate.HConf.getSessionFactory;
-import static com.akgarg.hibernate.HibernateUtils.saveStudents;
+import static com.akgarg.hibernate.HibernateUtils.insertStudentsAndClear;
 
 public class CriteriaExample {
 
@@ -22,106 +19,98 @@ public class CriteriaExample {
     private static final int TOTAL_NUMBER_OF_STUDENTS = 10;
 
     public static void main(String[] args) {
-        final SessionFactory sessionFactory = getSessionFactory();
+        final Map<String, Object> settings = new HashMap<>(StudentSearch.hibernateSettings(StudentSearch.Storage.inMemory()));
+        settings.put(StatisticsSettings.GENERATE_STATISTICS, true);
+        final SessionFactory sessionFactory = getSessionFactory(settings);
         final Session session = sessionFactory.openSession();
-        saveStudents(session, TOTAL_NUMBER_OF_STUDENTS);
+        insertStudentsAndClear(session, TOTAL_NUMBER_OF_STUDENTS);
         session.close();
 
         findAll(sessionFactory.openSession());
+        findAllViews(sessionFactory.openSession());
         findById(sessionFactory.openSession());
         orderByIdDesc(sessionFactory.openSession());
+        orderByIdDescWithKeysetPagination(sessionFactory.openSession());
         updateById(sessionFactory.openSession());
+        // the update above is a mutation query, which bypasses the full-text index
+        LOGGER.info("reindexed {} students", StudentSearch.reindex(sessionFactory));
         nameHaving(sessionFactory.openSession());
         deleteById(sessionFactory.openSession());
 
+        LOGGER.info("query plan cache: {}", QueryPlanCacheReport.of(sessionFactory));
+
         sessionFactory.close();
     }
 
     private static void deleteById(final Session session) {
-        final EntityManager entityManager = session.getEntityManagerFactory().createEntityManager();
-        final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
-        final JpaCriteriaDelete<Student> criteriaQuery = criteriaBuilder.createCriteriaDelete(Student.class);
-        final JpaRoot<Student> root = criteriaQuery.from(Student.class);
-
-        criteriaQuery.where(criteriaBuilder.equal(root.get("id"), 1));
-
-        final Query deleteQuery = entityManager.createQuery(criteriaQuery);
         session.beginTransaction();
-        final int deleteResult = deleteQuery.executeUpdate();
+        final int deleteResult = StudentQueries.mutate(session, StudentQueries.DELETE_BY_ID)
+                .setParameter("id", 1)
+                .executeUpdate();
         LOGGER.info("delete query deleted '{}' rows", deleteResult);
         session.getTransaction().commit();
-        entityManager.close();
         session.close();
     }
 
     private static void nameHaving(final Session session) {
-        final EntityManager entityManager = session.getEntityManagerFactory().createEntityManager();
-        final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
-        final JpaCriteriaQuery<Student> criteriaQuery = criteriaBuilder.createQuery(Student.class);
-        final JpaRoot<Student> root = criteriaQuery.from(Student.class);
-
-        criteriaQuery.select(root).where(criteriaBuilder.like(root.get("name"), "%John%"));
-
-        final TypedQuery<Student> query = entityManager.createQuery(criteriaQuery);
-        query.getResultList().forEach(LOGGER::info);
-        entityManager.close();
+        // full-text search instead of LIKE '%John%', which cannot use an index and scans the whole table
+        StudentSearch.entities(session, "John", TOTAL_NUMBER_OF_STUDENTS, StudentSearch.Field.NAME)
+                .forEach(LOGGER::info);
         session.close();
     }
 
     private static void updateById(final Session session) {
-        final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
-        final JpaCriteriaUpdate<Student> criteriaQuery = criteriaBuilder.createCriteriaUpdate(Student.class);
-        final JpaRoot<Student> root = criteriaQuery.from(Student.class);
-
-        criteriaQuery.set("name", "John Doe");
-        criteriaQuery.where(criteriaBuilder.equal(root.get("id"), 1));
-
-        final MutationQuery updateQuery = session.createMutationQuery(criteriaQuery);
         session.beginTransaction();
-        final int updateResult = updateQuery.executeUpdate();
+        final int updateResult = StudentQueries.mutate(session, StudentQueries.UPDATE_NAME_BY_ID)
+                .setParameter("name", "John Doe")
+                .setParameter("id", 1)
+                .executeUpdate();
         session.getTransaction().commit();
         LOGGER.info("update query updated '{}' rows", updateResult);
         session.close();
     }
 
     private static void orderByIdDesc(final Session session) {
-        final EntityManager entityManager = session.getEntityManagerFactory().createEntityManager();
-        final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
-        final JpaCriteriaQuery<Student> criteriaQuery = criteriaBuilder.createQuery(Student.class);
-        final JpaRoot<Student> root = criteriaQuery.from(Student.class);
-
-        criteriaQuery.select(root).orderBy(criteriaBuilder.desc(root.get("id")));
+        StudentQueries.select(session, StudentQueries.ORDER_BY_ID_DESC)
+                .list()
+                .forEach(LOGGER::info);
+        session.close();
+    }
 
-        final TypedQuery<Student> query = entityManager.createQuery(criteriaQuery);
-        query.getResultList().forEach(LOGGER::info);
-        entityManager.close();
+    private static void orderByIdDescWithKeysetPagination(final Session session) {
+        String cursor = null;
+        int pageNumber = 0;
+        do {
+            final KeysetPagination.KeysetPage<Student> page = KeysetPagination.criteria(session, KeysetSort.STUDENT_BY_ID_DESC, cursor, KeysetPagination.Direction.FORWARD, 3);
+            final int currentPageNumber = ++pageNumber;
+            page.items().forEach(student -> LOGGER.info("page {}: {}", currentPageNumber, student));
+            cursor = page.nextCursor();
+        } while (cursor != null);
         session.close();
     }
 
     private static void findById(final Session session) {
-        final EntityManager entityManager = session.getEntityManagerFactory().createEntityManager();
-        final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
-        final JpaCriteriaQuery<Student> criteriaQuery = criteriaBuilder.createQuery(Student.class);
-        final JpaRoot<Student> root = criteriaQuery.from(Student.class);
-
-        criteriaQuery.select(root)
-                .where(criteriaBuilder.greaterThan(root.get("id"), 1));
+        StudentQueries.select(session, StudentQueries.FIND_BY_ID_GREATER_THAN)
+                .setParameter("id", 1)
+                .list()
+                .forEach(LOGGER::info);
+        session.close();
+    }
 
-        final TypedQuery<Student> query = entityManager.createQuery(criteriaQuery);
-        query.getResultList().forEach(LOGGER::info);
-        entityManager.close();
+    private static void findAllViews(final Session session) {
+        StudentProjections.criteria(session, StudentView.class,
+                        (criteriaBuilder, criteriaQuery, root) -> criteriaQuery.orderBy(criteriaBuilder.asc(root.get("id"))))
+                .list()
+                .forEach(LOGGER::info);
+        LOGGER.info("entities in the session after reading views: {}", session.getStatistics().getEntityCount());
         session.close();
     }
 
     private static void findAll(final Session session) {
-        final EntityManager entityManager = session.getEntityManagerFactory().createEntityManager();
-        final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
-        final CriteriaQuery<Student> criteriaQuery = criteriaBuilder.createQuery(Student.class);
-        final Root<Student> root = criteriaQuery.from(Student.class);
-        criteriaQuery.select(root);
-        final TypedQuery<Student> query = entityManager.createQuery(criteriaQuery);
-        query.getResultList().forEach(LOGGER::info);
-        entityManager.close();
+        StudentQueries.select(session, StudentQueries.FIND_ALL)
+                .setCacheable(true)
+                .list()
+                .forEach(LOGGER::info);
         session.close();
     }
 
@@ -0,0 +1,492 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imports students from a CSV file with a {@code name,team} line per student, a replacement for generating them with
+ * {@link HibernateUtils#insertStudentsAndClear} when the data already exists.
+ * <p>
+ * The file is split into chunks of about {@link Options#chunkBytes()} ending at a line break, and each chunk is
+ * memory-mapped and parsed on a {@link ForkJoinPool} of {@link Options#parsers()} threads. Fields are decoded straight
+ * from the mapped bytes through a per-chunk scratch buffer, the only allocations per row are the two strings and the
+ * student. Parsed students are handed over in batches through a queue of {@link Options#queueCapacity()} batches to
+ * {@link Options#writers()} threads, each one inserting with its own stateless session through {@link BulkInserter}.
+ * A full queue blocks the parsers, so memory stays bounded whatever the file size.
+ * <p>
+ * Fields may be quoted ({@code "Doe, John"}, {@code ""} inside quotes for a quote) but must not contain line breaks.
+ * Lines with a wrong number of fields, a blank field or a field longer than {@value #MAX_FIELD_LENGTH} characters are
+ * rejected and written to the rejected output as {@code byteOffset,"reason",line}.
+ */
+public final class CsvImporter {
+
+    static final int MAX_FIELD_LENGTH = 255;
+
+    private static final Logger LOGGER = LogManager.getLogger(CsvImporter.class);
+    private static final int FIELDS = 2;
+    private static final List<Student> END = List.of();
+
+    private CsvImporter() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Imports all students of the given file.
+     *
+     * @param rejectedOutput file receiving the rejected lines, replaced if it exists; {@code null} to only count them
+     * @throws IllegalStateException if a writer failed, students written before the failure stay committed
+     */
+    static Report importFile(final SessionFactory sessionFactory,
+                             final Path csv,
+                             final Path rejectedOutput,
+                             final Options options) throws IOException {
+        final long startNanos = System.nanoTime();
+        final Progress progress = new Progress();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final BlockingQueue<List<Student>> queue = new ArrayBlockingQueue<>(options.queueCapacity());
+
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ);
+             RejectedLines rejectedLines = new RejectedLines(rejectedOutput)) {
+            final long fileSize = channel.size();
+            final List<long[]> chunks = chunks(channel, options.chunkBytes());
+
+            final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("csv-import-progress").daemon().factory());
+            final long reportNanos = options.progressInterval().toNanos();
+            reporter.scheduleAtFixedRate(() -> logProgress(progress, fileSize, startNanos), reportNanos, reportNanos, TimeUnit.NANOSECONDS);
+
+            final ExecutorService writers = Executors.newFixedThreadPool(options.writers(), Thread.ofPlatform().name("csv-import-writer-", 0).factory());
+            final ForkJoinPool parsers = new ForkJoinPool(options.parsers());
+            try {
+                final List<Future<?>> writerFutures = new ArrayList<>(options.writers());
+                for (int i = 0; i < options.writers(); i++) {
+                    writerFutures.add(writers.submit(() -> write(sessionFactory, queue, progress, failure, options)));
+                }
+
+                final List<Future<?>> parserFutures = new ArrayList<>(chunks.size());
+                for (int i = 0; i < chunks.size(); i++) {
+                    final long[] chunk = chunks.get(i);
+                    final boolean firstChunk = i == 0;
+                    parserFutures.add(parsers.submit(() -> parse(channel, chunk[0], chunk[1], firstChunk && options.header(),
+                            queue, progress, rejectedLines, failure, options)));
+                }
+                await(parserFutures, failure);
+                for (int i = 0; i < options.writers(); i++) {
+                    offer(queue, END, failure);
+                }
+                await(writerFutures, failure);
+            } finally {
+                parsers.shutdownNow();
+                writers.shutdownNow();
+                reporter.shutdownNow();
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new IllegalStateException("csv import of " + csv + " failed after " + progress.written.sum() + " committed students", failure.get());
+        }
+        final Report report = new Report(progress.parsed.sum() + progress.rejected.sum(), progress.written.sum(), progress.rejected.sum(),
+                Duration.ofNanos(System.nanoTime() - startNanos));
+        LOGGER.info("imported {}: {}", csv, report);
+        return report;
+    }
+
+    /**
+     * Start and end offsets of the chunks, every chunk but the last one ends right after a line break.
+     */
+    private static List<long[]> chunks(final FileChannel channel, final int chunkBytes) throws IOException {
+        final long fileSize = channel.size();
+        final List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < fileSize) {
+            long end = Math.min(fileSize, start + chunkBytes);
+            if (end < fileSize) {
+                // at most one line beyond the nominal end, lines are far shorter than a chunk
+                final MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, end, Math.min(fileSize - end, chunkBytes));
+                int lineEnd = 0;
+                while (lineEnd < tail.limit() && tail.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                end = Math.min(fileSize, end + lineEnd + 1);
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static void parse(final FileChannel channel,
+                              final long start,
+                              final long end,
+                              final boolean skipFirstLine,
+                              final BlockingQueue<List<Student>> queue,
+                              final Progress progress,
+                              final RejectedLines rejectedLines,
+                              final AtomicReference<RuntimeException> failure,
+                              final Options options) {
+        final MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            failure.compareAndSet(null, new UncheckedIOException(e));
+            return;
+        }
+
+        final LineParser parser = new LineParser();
+        List<Student> batch = new ArrayList<>(options.batchSize());
+        boolean skipLine = skipFirstLine;
+        int lineStart = 0;
+        final int limit = buffer.limit();
+        while (lineStart < limit && failure.get() == null) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            final int nextLineStart = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+
+            if (skipLine) {
+                skipLine = false;
+            } else if (lineEnd > lineStart) {
+                final String rejection = parser.parse(buffer, lineStart, lineEnd);
+                if (rejection == null) {
+                    final Student student = new Student();
+                    student.setName(parser.fields[0]);
+                    student.setTeam(parser.fields[1]);
+                    batch.add(student);
+                    if (batch.size() == options.batchSize()) {
+                        progress.parsed.add(batch.size());
+                        offer(queue, batch, failure);
+                        batch = new ArrayList<>(options.batchSize());
+                    }
+                } else {
+                    progress.rejected.increment();
+                    rejectedLines.write(start + lineStart, rejection, buffer, lineStart, lineEnd);
+                }
+            }
+            progress.bytes.add(nextLineStart - lineStart);
+            lineStart = nextLineStart;
+        }
+        if (!batch.isEmpty()) {
+            progress.parsed.add(batch.size());
+            offer(queue, batch, failure);
+        }
+    }
+
+    /**
+     * Inserts the batches of the queue until {@link #END}, one {@link BulkInserter} run over all of them.
+     */
+    private static void write(final SessionFactory sessionFactory,
+                              final BlockingQueue<List<Student>> queue,
+                              final Progress progress,
+                              final AtomicReference<RuntimeException> failure,
+                              final Options options) {
+        final Iterator<Student> students = new Iterator<>() {
+            private List<Student> batch = new ArrayList<>();
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                while (index == batch.size()) {
+                    if (batch == END) {
+                        return false;
+                    }
+                    final List<Student> next;
+                    try {
+                        next = queue.poll(100, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("interrupted while waiting for parsed students", e);
+                    }
+                    if (next != null) {
+                        batch = next;
+                        index = 0;
+                    } else if (failure.get() != null) {
+                        // the current transaction of this writer is rolled back
+                        throw new IllegalStateException("csv import aborted", failure.get());
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Student next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(index++);
+            }
+        };
+
+        // students are counted as written once their transaction is committed
+        try (StatelessSession statelessSession = sessionFactory.openStatelessSession()) {
+            BulkInserter.insert(statelessSession, students, BulkInserter.Options.defaults()
+                    .withBatchSize(options.batchSize())
+                    .withChunkSize(options.batchSize() * options.batchesPerTransaction()), progress.written::add);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+            // nobody takes from the queue anymore if every writer failed, parsers stop on the failure
+            queue.clear();
+        }
+    }
+
+    /**
+     * Puts the batch into the queue, giving up once another thread failed.
+     */
+    private static void offer(final BlockingQueue<List<Student>> queue,
+                              final List<Student> batch,
+                              final AtomicReference<RuntimeException> failure) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new IllegalStateException("interrupted while queueing parsed students", e));
+        }
+    }
+
+    private static void await(final List<Future<?>> futures, final AtomicReference<RuntimeException> failure) {
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, new IllegalStateException("interrupted while importing", e));
+                return;
+            }
+        }
+    }
+
+    private static void logProgress(final Progress progress, final long fileSize, final long startNanos) {
+        final double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        final long written = progress.written.sum();
+        LOGGER.info("csv import: {}% read, {} parsed, {} written, {} rejected, {} rows/sec",
+                fileSize == 0 ? 100 : progress.bytes.sum() * 100 / fileSize, progress.parsed.sum(), written,
+                progress.rejected.sum(), String.format("%.0f", written / Math.max(seconds, 0.001)));
+    }
+
+    /**
+     * Splits one line into its fields, reusing its scratch buffer from line to line.
+     */
+    private static final class LineParser {
+
+        private final String[] fields = new String[FIELDS];
+        private byte[] scratch = new byte[MAX_FIELD_LENGTH * 4];
+        private int length;
+
+        /**
+         * @return {@code null} if the line is valid, its fields are then in {@link #fields}; the reason of the
+         * rejection otherwise
+         */
+        String parse(final MappedByteBuffer buffer, final int from, final int to) {
+            int count = 0;
+            int position = from;
+            while (true) {
+                length = 0;
+                if (position < to && buffer.get(position) == '"') {
+                    position++;
+                    boolean closed = false;
+                    while (position < to) {
+                        final byte value = buffer.get(position++);
+                        if (value != '"') {
+                            append(value);
+                        } else if (position < to && buffer.get(position) == '"') {
+                            append(value);
+                            position++;
+                        } else {
+                            closed = true;
+                            break;
+                        }
+                    }
+                    if (!closed) {
+                        return "unterminated quote";
+                    }
+                    if (position < to && buffer.get(position) != ',') {
+                        return "characters after closing quote";
+                    }
+                } else {
+                    while (position < to && buffer.get(position) != ',') {
+                        append(buffer.get(position++));
+                    }
+                }
+
+                if (count == FIELDS) {
+                    return "more than " + FIELDS + " fields";
+                }
+                final String field = new String(scratch, 0, length, StandardCharsets.UTF_8).strip();
+                if (field.isEmpty()) {
+                    return "blank field " + (count + 1);
+                }
+                if (field.length() > MAX_FIELD_LENGTH) {
+                    return "field " + (count + 1) + " longer than " + MAX_FIELD_LENGTH + " characters";
+                }
+                fields[count++] = field;
+
+                if (position >= to) {
+                    break;
+                }
+                position++;
+            }
+            return count == FIELDS ? null : "expected " + FIELDS + " fields, found " + count;
+        }
+
+        private void append(final byte value) {
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, scratch.length * 2);
+            }
+            scratch[length++] = value;
+        }
+
+    }
+
+    /**
+     * Output of the rejected lines, shared by all parsers.
+     */
+    private static final class RejectedLines implements AutoCloseable {
+
+        private final Writer writer;
+
+        private RejectedLines(final Path output) throws IOException {
+            this.writer = output == null ? null : Files.newBufferedWriter(output, StandardCharsets.UTF_8);
+        }
+
+        void write(final long offset, final String reason, final MappedByteBuffer buffer, final int from, final int to) {
+            if (writer == null) {
+                return;
+            }
+            final byte[] line = new byte[to - from];
+            buffer.get(from, line);
+            synchronized (this) {
+                try {
+                    writer.write(offset + ",\"" + reason + "\"," + new String(line, StandardCharsets.UTF_8) + "\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+
+    }
+
+    private static final class Progress {
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder parsed = new LongAdder();
+        private final LongAdder written = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+    }
+
+    /**
+     * @param parsers               threads parsing chunks of the file
+     * @param writers               threads inserting students, each with its own stateless session and connection
+     * @param batchSize             students per batch handed from the parsers to the writers, also the JDBC batch
+     *                              size
+     * @param batchesPerTransaction batches inserted per transaction by a writer
+     * @param queueCapacity         batches parsed ahead of the writers
+     * @param chunkBytes            approximate size of the chunks the file is split into
+     * @param header                whether the first line of the file is a header to be skipped
+     * @param progressInterval      time between two progress log lines
+     */
+    public record Options(int parsers,
+                          int writers,
+                          int batchSize,
+                          int batchesPerTransaction,
+                          int queueCapacity,
+                          int chunkBytes,
+                          boolean header,
+                          Duration progressInterval) {
+
+        public Options {
+            if (parsers < 1 || writers < 1 || batchSize < 1 || batchesPerTransaction < 1 || queueCapacity < 1) {
+                throw new IllegalArgumentException("parsers, writers, batchSize, batchesPerTransaction and queueCapacity must be positive");
+            }
+            if (chunkBytes < 64 * 1024) {
+                throw new IllegalArgumentException("chunkBytes must be at least 64 KiB: " + chunkBytes);
+            }
+            if (progressInterval == null || progressInterval.isNegative() || progressInterval.isZero()) {
+                throw new IllegalArgumentException("progressInterval must be positive");
+            }
+        }
+
+        public static Options defaults() {
+            final int processors = Runtime.getRuntime().availableProcessors();
+            return new Options(Math.max(1, processors / 2), Math.max(1, processors / 2), HConf.DEFAULT_BATCH_SIZE, 20, 64,
+                    8 * 1024 * 1024, true, Duration.ofSeconds(1));
+        }
+
+        public Options withParsers(final int parsers) {
+            return new Options(parsers, writers, batchSize, batchesPerTransaction, queueCapacity, chunkBytes, header, progressInterval);
+        }
+
+        public Options withWriters(final int writers) {
+            return new Options(parsers, writers, batchSize, batchesPerTransaction, queueCapacity, chunkBytes, header, progressInterval);
+        }
+
+        public Options withHeader(final boolean header) {
+            return new Options(parsers, writers, batchSize, batchesPerTransaction, queueCapacity, chunkBytes, header, progressInterval);
+        }
+
+    }
+
+    /**
+     * @param rows     data lines read, header and empty lines excluded
+     * @param written  students inserted and committed
+     * @param rejected lines rejected
+     * @param elapsed  time taken by the import
+     */
+    public record Report(long rows, long written, long rejected, Duration elapsed) {
+
+        public double rowsPerSecond() {
+            return written / Math.max(elapsed.toNanos() / 1_000_000_000.0, 1e-9);
+        }
+
+        @Override
+        public String toString() {
+            return rows + " rows, " + written + " written, " + rejected + " rejected in " + elapsed.toMillis() + " ms -> "
+                    + String.format("%.0f", rowsPerSecond()) + " rows/sec";
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.JdbcSettings;
+import org.hibernate.cfg.QuerySettings;
+import org.hibernate.cfg.SchemaToolingSettings;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Session factory bootstrap for short-lived processes, an alternative to {@link HConf#getSessionFactory(Map)}:
+ * <ul>
+ *     <li>the service registry (settings, dialect, connection provider, cache region factory) is built once per
+ *     settings and reused by every later build in the same JVM, it is kept in memory only so a new process always
+ *     pays for it once. The registry holds a single cache region factory, which a session factory stops when it is
+ *     closed, so only one session factory per settings may be open at a time. The mapping metadata is built again
+ *     for every session factory, hibernate clears its type configuration when the first session factory built from
+ *     it is closed</li>
+ *     <li>the schema is left alone or validated (see {@link SchemaAction}) instead of being dropped and recreated</li>
+ *     <li>when the dialect is known (given, or derived from the JDBC url) hibernate does not connect to the database
+ *     to read its metadata while booting, the first connection is opened by the first session needing one</li>
+ *     <li>{@link #lazy(Map, SchemaAction)} defers the whole build to the first use</li>
+ * </ul>
+ */
+public final class FastBootstrap {
+
+    private static final Logger LOGGER = LogManager.getLogger(FastBootstrap.class);
+    private static final Map<BootKey, ReusedRegistry> SERVICE_REGISTRIES = new ConcurrentHashMap<>();
+
+    private FastBootstrap() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Builds a session factory, reusing the service registry of a previous build with the same settings.
+     *
+     * @param overrides hibernate settings overriding (or adding to) the {@link HConf} defaults
+     * @throws IllegalStateException if the session factory of a previous build with the same settings is still open
+     */
+    static SessionFactory build(final Map<String, Object> overrides, final SchemaAction schemaAction) {
+        return SERVICE_REGISTRIES.computeIfAbsent(
+                        new BootKey(Map.copyOf(overrides), schemaAction),
+                        key -> new ReusedRegistry(serviceRegistry(settings(overrides, schemaAction))))
+                .build(schemaAction);
+    }
+
+    /**
+     * Session factory built by {@link #build(Map, SchemaAction)} on first use.
+     */
+    static LazySessionFactory lazy(final Map<String, Object> overrides, final SchemaAction schemaAction) {
+        return new LazySessionFactory(() -> build(overrides, schemaAction));
+    }
+
+    /**
+     * Destroys the service registries kept for reuse, session factories built from them must be closed before.
+     */
+    static void release() {
+        SERVICE_REGISTRIES.values().forEach(reused -> StandardServiceRegistryBuilder.destroy(reused.serviceRegistry));
+        SERVICE_REGISTRIES.clear();
+    }
+
+    /**
+     * {@link HConf} settings with the given overrides, the schema action and the settings avoiding work at boot.
+     */
+    static Map<String, Object> settings(final Map<String, Object> overrides, final SchemaAction schemaAction) {
+        final Map<String, Object> settings = new HashMap<>(HConf.hibernateSettings(overrides));
+        settings.put(SchemaToolingSettings.HBM2DDL_AUTO, schemaAction.hbm2ddlAuto);
+        // named queries are still translated, but on first use instead of all of them at boot
+        settings.putIfAbsent(QuerySettings.QUERY_STARTUP_CHECKING, false);
+
+        if (!settings.containsKey(JdbcSettings.DIALECT)) {
+            final String url = String.valueOf(settings.get(JdbcSettings.JAKARTA_JDBC_URL));
+            if (url.startsWith("jdbc:h2:")) {
+                settings.put(JdbcSettings.DIALECT, H2Dialect.class.getName());
+            } else if (url.startsWith("jdbc:mysql:")) {
+                settings.put(JdbcSettings.DIALECT, MySQLDialect.class.getName());
+            }
+        }
+        // without a dialect hibernate has to connect to find out which database it talks to
+        settings.putIfAbsent(JdbcSettings.ALLOW_METADATA_ON_BOOT, !settings.containsKey(JdbcSettings.DIALECT));
+        return settings;
+    }
+
+    /**
+     * Service registry which outlives the session factories built with it.
+     */
+    static StandardServiceRegistry serviceRegistry(final Map<String, Object> settings) {
+        return new StandardServiceRegistryBuilder()
+                .applySettings(settings)
+                .disableAutoClose()
+                .build();
+    }
+
+    static Metadata metadata(final StandardServiceRegistry serviceRegistry) {
+        return new MetadataSources(serviceRegistry)
+                .addAnnotatedClass(Student.class)
+                .buildMetadata();
+    }
+
+    static SessionFactory sessionFactory(final Metadata metadata, final SchemaAction schemaAction) {
+        final SessionFactory sessionFactory = metadata.buildSessionFactory();
+        StudentQueries.register(sessionFactory);
+        if (schemaAction == SchemaAction.VALIDATE_DEFERRED) {
+            Thread.ofVirtual().name("schema-validation").start(() -> {
+                try {
+                    sessionFactory.getSchemaManager().validateMappedObjects();
+                    LOGGER.info("schema validated");
+                } catch (RuntimeException e) {
+                    LOGGER.error("schema does not match the mappings", e);
+                }
+            });
+        }
+        return sessionFactory;
+    }
+
+    public enum SchemaAction {
+        /**
+         * drop and create the schema while booting, what {@link HConf} does
+         */
+        CREATE("create"),
+
+        /**
+         * validate the schema against the mappings while booting, a mismatch fails the build
+         */
+        VALIDATE("validate"),
+
+        /**
+         * validate the schema on a background thread after the build, a mismatch is only logged
+         */
+        VALIDATE_DEFERRED("none"),
+
+        /**
+         * trust the schema
+         */
+        NONE("none");
+
+        private final String hbm2ddlAuto;
+
+        SchemaAction(final String hbm2ddlAuto) {
+            this.hbm2ddlAuto = hbm2ddlAuto;
+        }
+    }
+
+    private record BootKey(Map<String, Object> overrides, SchemaAction schemaAction) {
+    }
+
+    /**
+     * Service registry kept for reuse, with the last session factory built from it.
+     */
+    private static final class ReusedRegistry {
+
+        private final StandardServiceRegistry serviceRegistry;
+        private SessionFactory lastBuilt;
+
+        private ReusedRegistry(final StandardServiceRegistry serviceRegistry) {
+            this.serviceRegistry = serviceRegistry;
+        }
+
+        private synchronized SessionFactory build(final SchemaAction schemaAction) {
+            if (lastBuilt != null && lastBuilt.isOpen()) {
+                // closing either factory would stop the cache region factory the other one still uses
+                throw new IllegalStateException("a session factory built with the same settings is still open, close it first");
+            }
+            lastBuilt = sessionFactory(metadata(serviceRegistry), schemaAction);
+            return lastBuilt;
+        }
+
+    }
+
+    /**
+     * Session factory holder building the factory on the first {@link #get()}.
+     */
+    public static final class LazySessionFactory implements AutoCloseable {
+
+        private final Supplier<SessionFactory> builder;
+        private volatile SessionFactory sessionFactory;
+
+        private LazySessionFactory(final Supplier<SessionFactory> builder) {
+            this.builder = builder;
+        }
+
+        public SessionFactory get() {
+            SessionFactory built = sessionFactory;
+            if (built == null) {
+                synchronized (this) {
+                    built = sessionFactory;
+                    if (built == null) {
+                        built = builder.get();
+                        sessionFactory = built;
+                    }
+                }
+            }
+            return built;
+        }
+
+        public boolean isBuilt() {
+            return sessionFactory != null;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (sessionFactory != null) {
+                sessionFactory.close();
+                sessionFactory = null;
+            }
+        }
+
+    }
+
+}
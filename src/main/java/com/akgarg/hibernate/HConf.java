@@ -3,45 +3,136 @@ package com.akgarg.hibernate;
 import com.akgarg.hibernate.entity.Student;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.BatchSettings;
 import org.hibernate.cfg.CacheSettings;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.JdbcSettings;
+import org.hibernate.cfg.QuerySettings;
 import org.hibernate.cfg.SchemaToolingSettings;
+import org.hibernate.search.mapper.orm.cfg.HibernateOrmMapperSettings;
 import org.hibernate.service.ServiceRegistry;
 
+import java.util.HashMap;
 import java.util.Map;
 
 final class HConf {
 
+    /**
+     * JDBC batch size used by default, kept equal to the allocation size of the student id sequence so one
+     * sequence round-trip covers one full insert batch.
+     */
+    static final int DEFAULT_BATCH_SIZE = 50;
+
+    /**
+     * Maximum number of translated query plans kept by hibernate, can be changed with the
+     * {@code hibernate.query.plan_cache_max_size} override.
+     */
+    static final int DEFAULT_QUERY_PLAN_CACHE_SIZE = 512;
+
     private HConf() {
         throw new IllegalStateException("utility configuration class");
     }
 
     static SessionFactory getSessionFactory() {
-        final ServiceRegistry serviceRegistry = getServiceRegistry();
+        return getSessionFactory(Map.of());
+    }
+
+    /**
+     * Builds a session factory using the default settings with the given settings applied on top of them.
+     *
+     * @param overrides hibernate settings overriding (or adding to) the defaults
+     * @return the built session factory
+     */
+    static SessionFactory getSessionFactory(final Map<String, Object> overrides) {
+        final ServiceRegistry serviceRegistry = getServiceRegistry(overrides);
 
         final Configuration hibernateConfiguration = new Configuration();
         hibernateConfiguration.addAnnotatedClass(Student.class);
 
-        return hibernateConfiguration
-                .buildSessionFactory(serviceRegistry);
+        final SessionFactory sessionFactory = hibernateConfiguration.buildSessionFactory(serviceRegistry);
+        StudentQueries.register(sessionFactory);
+        return sessionFactory;
+    }
+
+    /**
+     * Settings pointing hibernate at a private in-memory H2 database, used by the benchmarks so that they can run
+     * without any external database.
+     *
+     * @param databaseName name of the in-memory database, databases with different names are isolated
+     * @return settings to be passed to {@link #getSessionFactory(Map)}
+     */
+    static Map<String, Object> embeddedDatabaseSettings(final String databaseName) {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put(JdbcSettings.JAKARTA_JDBC_DRIVER, "org.h2.Driver");
+        settings.put(JdbcSettings.JAKARTA_JDBC_USER, "sa");
+        settings.put(JdbcSettings.JAKARTA_JDBC_PASSWORD, "");
+        settings.put(JdbcSettings.JAKARTA_JDBC_URL, embeddedDatabaseUrl(databaseName));
+        return settings;
+    }
+
+    /**
+     * Settings pointing hibernate at the given connection pool, in-memory H2 is assumed to be the database behind it.
+     */
+    static Map<String, Object> embeddedDatabaseSettings(final ConnectionPool connectionPool) {
+        return new HashMap<>(connectionPool.hibernateSettings());
+    }
+
+    /**
+     * Settings pointing hibernate at the given routing data source, in-memory H2 is assumed to be the database of
+     * the primary and of the replicas.
+     */
+    static Map<String, Object> embeddedDatabaseSettings(final RoutingDataSource routingDataSource) {
+        return new HashMap<>(routingDataSource.hibernateSettings());
     }
 
-    private static ServiceRegistry getServiceRegistry() {
-        final Map<String, Object> hibernateSettings = Map.of(
+    static String embeddedDatabaseUrl(final String databaseName) {
+        return "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static ServiceRegistry getServiceRegistry(final Map<String, Object> overrides) {
+        return new StandardServiceRegistryBuilder()
+                .applySettings(hibernateSettings(overrides))
+                .build();
+    }
+
+    /**
+     * The default settings with the given settings applied on top of them.
+     */
+    static Map<String, Object> hibernateSettings(final Map<String, Object> overrides) {
+        final Map<String, Object> hibernateSettings = new HashMap<>(Map.of(
                 JdbcSettings.JAKARTA_JDBC_DRIVER, "com.mysql.cj.jdbc.Driver",
                 JdbcSettings.JAKARTA_JDBC_USER, "root",
                 JdbcSettings.JAKARTA_JDBC_PASSWORD, "root",
-                JdbcSettings.JAKARTA_JDBC_URL, "jdbc:mysql://127.0.0.1:3306/hibernate_learning",
-                JdbcSettings.SHOW_SQL, true,
+                JdbcSettings.JAKARTA_JDBC_URL, "jdbc:mysql://127.0.0.1:3306/hibernate_learning?useCursorFetch=true",
+                JdbcSettings.SHOW_SQL, false,
                 JdbcSettings.FORMAT_SQL, false,
                 SchemaToolingSettings.HBM2DDL_AUTO, "create",
-                CacheSettings.USE_SECOND_LEVEL_CACHE, false
-        );
-
-        return new StandardServiceRegistryBuilder()
-                .applySettings(hibernateSettings)
-                .build();
+                CacheSettings.USE_SECOND_LEVEL_CACHE, true,
+                CacheSettings.CACHE_REGION_FACTORY, BoundedCacheRegionFactory.class.getName()
+        ));
+        hibernateSettings.put(CacheSettings.USE_QUERY_CACHE, true);
+        hibernateSettings.put(CacheSettings.QUERY_CACHE_FACTORY, InvalidationCountingTimestampsCacheFactory.class.getName());
+        hibernateSettings.put(BatchSettings.STATEMENT_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        hibernateSettings.put(BatchSettings.ORDER_INSERTS, true);
+        hibernateSettings.put(BatchSettings.ORDER_UPDATES, true);
+        hibernateSettings.put(QuerySettings.QUERY_PLAN_CACHE_ENABLED, true);
+        hibernateSettings.put(QuerySettings.QUERY_PLAN_CACHE_MAX_SIZE, DEFAULT_QUERY_PLAN_CACHE_SIZE);
+        // IN list parameters are padded to the next power of two, only a few statement shapes exist whatever the size
+        hibernateSettings.put(QuerySettings.IN_CLAUSE_PARAMETER_PADDING, true);
+        // the full-text index is opt-in, see StudentSearch.hibernateSettings
+        hibernateSettings.put(HibernateOrmMapperSettings.ENABLED, false);
+        if (overrides.containsKey(JdbcSettings.JAKARTA_NON_JTA_DATASOURCE)) {
+            // connections come from the provided data source, the built-in pool settings would only be misleading
+            hibernateSettings.remove(JdbcSettings.JAKARTA_JDBC_DRIVER);
+            hibernateSettings.remove(JdbcSettings.JAKARTA_JDBC_USER);
+            hibernateSettings.remove(JdbcSettings.JAKARTA_JDBC_PASSWORD);
+            hibernateSettings.remove(JdbcSettings.JAKARTA_JDBC_URL);
+        }
+        hibernateSettings.putAll(overrides);
+        if (SqlInstrumentation.isEnabled(hibernateSettings)) {
+            hibernateSettings.putAll(SqlInstrumentation.create(hibernateSettings).hibernateSettings());
+        }
+        return hibernateSettings;
     }
 
 }
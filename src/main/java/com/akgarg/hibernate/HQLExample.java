@@ -7,12 +7,16 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.query.MutationQuery;
 import org.hibernate.query.Query;
+import org.hibernate.query.SelectionQuery;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.akgarg.hibernate.HConf.getSessionFactory;
-import static com.akgarg.hibernate.HibernateUtils.saveStudents;
+import static com.akgarg.hibernate.HibernateUtils.insertStudentsAndClear;
 
 public class HQLExample {
 
@@ -23,10 +27,13 @@ public class HQLExample {
         final SessionFactory sessionFactory = getSessionFactory();
         final Session session = sessionFactory.openSession();
 
-        saveStudents(session, TOTAL_NUMBER_OF_STUDENTS);
+        insertStudentsAndClear(session, TOTAL_NUMBER_OF_STUDENTS);
         findAllStudents(session);
+        exportAllStudents(session);
+        countStudentsPerTeam(session);
         findById(session);
         getWithPagination(session);
+        getWithKeysetPagination(session);
         updateById(session);
         deleteById(session);
 
@@ -35,11 +42,27 @@ public class HQLExample {
     }
 
     private static void findAllStudents(final Session session) {
-        final Query<Student> fromStudentQuery = session.createQuery("FROM Student", Student.class);
-        final List<Student> allStudents = fromStudentQuery.list();
+        // only logged, so the students are read as views instead of managed entities
+        final SelectionQuery<StudentView> allStudentsQuery = StudentProjections.hql(session, StudentView.class, "ORDER BY s.id");
+        allStudentsQuery.setCacheable(true);
+        final List<StudentView> allStudents = allStudentsQuery.list();
         allStudents.forEach(LOGGER::info);
     }
 
+    private static void exportAllStudents(final Session session) {
+        final Query<Student> fromStudentQuery = session.createQuery("FROM Student s ORDER BY s.id", Student.class);
+        final long exportedRows = StreamingReader.forEach(session, fromStudentQuery, StreamingReader.Options.defaults(), LOGGER::info);
+        LOGGER.info("Exported {} students", exportedRows);
+    }
+
+    private static void countStudentsPerTeam(final Session session) {
+        final Query<Student> fromStudentQuery = session.createQuery("FROM Student s", Student.class);
+        try (Stream<Student> students = StreamingReader.stream(session, fromStudentQuery, StreamingReader.Options.defaults())) {
+            final Map<String, Long> studentsPerTeam = students.collect(Collectors.groupingBy(Student::getTeam, Collectors.counting()));
+            LOGGER.info("Students per team: {}", studentsPerTeam);
+        }
+    }
+
     private static void findById(final Session session) {
         final int studentId = 1;
         final Query<Student> studentByIdQuery = session.createQuery("FROM Student s WHERE s.id = :id", Student.class);
@@ -80,8 +103,21 @@ public class HQLExample {
         findAllStudents(session);
     }
 
+    private static void getWithKeysetPagination(final Session session) {
+        // first page, then the next one using the cursor of the first, and back again
+        final KeysetPagination.KeysetPage<Student> firstPage = KeysetPagination.hql(session, KeysetSort.STUDENT_BY_NAME_AND_ID, null, KeysetPagination.Direction.FORWARD, 5);
+        firstPage.items().forEach(LOGGER::info);
+
+        final KeysetPagination.KeysetPage<Student> secondPage = KeysetPagination.hql(session, KeysetSort.STUDENT_BY_NAME_AND_ID, firstPage.nextCursor(), KeysetPagination.Direction.FORWARD, 5);
+        secondPage.items().forEach(LOGGER::info);
+
+        final KeysetPagination.KeysetPage<Student> backToFirstPage = KeysetPagination.hql(session, KeysetSort.STUDENT_BY_NAME_AND_ID, secondPage.previousCursor(), KeysetPagination.Direction.BACKWARD, 5);
+        LOGGER.info("Back on first page: {}, has previous page: {}", backToFirstPage.items().equals(firstPage.items()), backToFirstPage.hasPrevious());
+    }
+
     private static void getWithPagination(final Session session) {
         final Query<Student> fromStudentPaginatedQuery = session.createQuery("FROM Student", Student.class);
+        fromStudentPaginatedQuery.setCacheable(true);   // first and max results are part of the query cache key
         fromStudentPaginatedQuery.setFirstResult(0);
         fromStudentPaginatedQuery.setMaxResults(5);
         final List<Student> students = fromStudentPaginatedQuery.getResultList();
@@ -0,0 +1,84 @@
+package com.akgarg.hibernate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Samples used heap on a daemon thread and remembers the peak, used by the benchmarks to compare the memory
+ * footprint of different code paths.
+ */
+final class HeapSampler implements AutoCloseable {
+
+    private static final MemoryMXBean MEMORY_MX_BEAN = ManagementFactory.getMemoryMXBean();
+
+    private final long baselineBytes;
+    private final Thread samplerThread;
+    private volatile long peakBytes;
+    private volatile boolean running = true;
+
+    private HeapSampler(final long sampleIntervalMillis) {
+        this.baselineBytes = settledUsedHeap();
+        this.peakBytes = baselineBytes;
+        this.samplerThread = Thread.ofPlatform()
+                .daemon()
+                .name("heap-sampler")
+                .start(() -> {
+                    while (running) {
+                        sample();
+                        try {
+                            Thread.sleep(sampleIntervalMillis);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Runs a GC, records the settled heap as baseline and starts sampling.
+     */
+    static HeapSampler start() {
+        return new HeapSampler(5);
+    }
+
+    /**
+     * Used heap after asking the JVM to collect garbage, as close to "retained heap" as we can get without a dump.
+     */
+    static long settledUsedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY_MX_BEAN.getHeapMemoryUsage().getUsed();
+    }
+
+    static String toMegabytes(final long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private void sample() {
+        final long used = MEMORY_MX_BEAN.getHeapMemoryUsage().getUsed();
+        if (used > peakBytes) {
+            peakBytes = used;
+        }
+    }
+
+    long baselineBytes() {
+        return baselineBytes;
+    }
+
+    /**
+     * Peak used heap above the baseline seen so far.
+     */
+    long peakAboveBaselineBytes() {
+        sample();
+        return Math.max(0, peakBytes - baselineBytes);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        samplerThread.interrupt();
+    }
+
+}
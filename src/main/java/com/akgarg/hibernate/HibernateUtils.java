@@ -4,6 +4,10 @@ import com.akgarg.hibernate.entity.Student;
 import com.github.javafaker.Faker;
 import org.hibernate.Session;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.LongFunction;
+
 public final class HibernateUtils {
 
     private static final Faker FAKER = new Faker();
@@ -12,15 +16,64 @@ public final class HibernateUtils {
         throw new IllegalStateException();
     }
 
-    static void saveStudents(final Session session, final int totalNumberOfStudents) {
-        for (int i = 0; i < totalNumberOfStudents; i++) {
-            final Student student = new Student();
-            student.setName(FAKER.name().fullName());
-            student.setTeam(FAKER.random().hex());
-            session.beginTransaction();
-            session.persist(student);
-            session.getTransaction().commit();
+    /**
+     * Inserts random students through {@link BulkInserter}, which commits them in transactions of its own and clears
+     * the session between chunks: entities managed by the session before the call are detached afterwards.
+     *
+     * @throws IllegalStateException if the session already has a transaction in progress
+     */
+    static void insertStudentsAndClear(final Session session, final int totalNumberOfStudents) {
+        if (session.getTransaction().isActive()) {
+            throw new IllegalStateException("students are inserted in transactions of their own, commit the current one first");
         }
+        BulkInserter.insert(session, randomStudents(totalNumberOfStudents), BulkInserter.Options.defaults());
+    }
+
+    static Student randomStudent() {
+        final Student student = new Student();
+        student.setName(FAKER.name().fullName());
+        student.setTeam(FAKER.random().hex());
+        return student;
+    }
+
+    /**
+     * Cheap deterministic student for benchmarks, where the cost of faker would dominate the measurement.
+     */
+    static Student syntheticStudent(final long index) {
+        final Student student = new Student();
+        student.setName("Student " + index);
+        student.setTeam("Team " + (index % 16));
+        return student;
+    }
+
+    static Iterator<Student> randomStudents(final long totalNumberOfStudents) {
+        return students(totalNumberOfStudents, index -> randomStudent());
+    }
+
+    static Iterator<Student> syntheticStudents(final long totalNumberOfStudents) {
+        return students(totalNumberOfStudents, HibernateUtils::syntheticStudent);
+    }
+
+    /**
+     * Lazily generates students, so that large numbers of rows can be produced without keeping them in memory.
+     */
+    private static Iterator<Student> students(final long totalNumberOfStudents, final LongFunction<Student> factory) {
+        return new Iterator<>() {
+            private long generated;
+
+            @Override
+            public boolean hasNext() {
+                return generated < totalNumberOfStudents;
+            }
+
+            @Override
+            public Student next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return factory.apply(generated++);
+            }
+        };
     }
 
 }
@@ -0,0 +1,66 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.internal.TimestampsCacheEnabledImpl;
+import org.hibernate.cache.spi.CacheImplementor;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.cache.spi.TimestampsCacheFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds hibernate's standard timestamps cache, counting invalidations per query space (table).
+ * <p>
+ * Cached query results are tagged with the tables they read. Every insert, update or delete (including bulk HQL,
+ * criteria and native mutation queries) records a new timestamp for the tables it touches, and a cached result older
+ * than the timestamp of one of its tables is treated as a miss. Only the results reading the touched tables are
+ * invalidated, the rest of the query cache stays warm.
+ */
+public class InvalidationCountingTimestampsCacheFactory implements TimestampsCacheFactory {
+
+    private final Map<String, LongAdder> invalidations = new ConcurrentHashMap<>();
+
+    /**
+     * Factory the given session factory was built with.
+     *
+     * @throws IllegalStateException if the session factory does not use this timestamps cache factory
+     */
+    static InvalidationCountingTimestampsCacheFactory of(final SessionFactory sessionFactory) {
+        final TimestampsCacheFactory timestampsCacheFactory = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getSessionFactoryOptions()
+                .getTimestampsCacheFactory();
+        if (timestampsCacheFactory instanceof InvalidationCountingTimestampsCacheFactory countingFactory) {
+            return countingFactory;
+        }
+        throw new IllegalStateException("session factory uses " + timestampsCacheFactory.getClass().getName() + " as timestamps cache factory");
+    }
+
+    @Override
+    public TimestampsCache buildTimestampsCache(final CacheImplementor cacheManager, final TimestampsRegion timestampsRegion) {
+        return new TimestampsCacheEnabledImpl(timestampsRegion) {
+            @Override
+            public void invalidate(final String[] spaces, final SharedSessionContractImplementor session) {
+                for (final String space : spaces) {
+                    invalidations.computeIfAbsent(space, ignored -> new LongAdder()).increment();
+                }
+                super.invalidate(spaces, session);
+            }
+        };
+    }
+
+    /**
+     * Number of invalidations per query space, sorted by space name.
+     */
+    public Map<String, Long> invalidationCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        invalidations.forEach((space, count) -> counts.put(space, count.sum()));
+        return counts;
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.akgarg.hibernate;
+
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaRoot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyset (seek) pagination, an alternative to {@code setFirstResult}/{@code setMaxResults}.
+ * <p>
+ * With an offset the database still has to produce and discard every skipped row, so page N costs O(N). A keyset page
+ * starts from the sort key of the last row seen ({@code WHERE (name, id) > (:name, :id)}), which an index on the sort
+ * attributes answers by seeking straight to the row, page N costs the same as page 1.
+ * <p>
+ * Pages are requested with the cursor of a previous page, {@code null} requests the first page (or the last page when
+ * going {@link Direction#BACKWARD}).
+ */
+public final class KeysetPagination {
+
+    private static final String ALIAS = "e";
+
+    private KeysetPagination() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Fetches a page with an HQL query.
+     */
+    static <T> KeysetPage<T> hql(final Session session,
+                                 final KeysetSort<T> sort,
+                                 final String cursor,
+                                 final Direction direction,
+                                 final int pageSize) {
+        final Object[] keyValues = cursor == null ? null : sort.decode(cursor);
+        final boolean forward = direction == Direction.FORWARD;
+        final boolean greaterThan = forward != sort.descending();
+
+        final StringBuilder hql = new StringBuilder("FROM ")
+                .append(session.getSessionFactory().getMetamodel().entity(sort.entityClass()).getName())
+                .append(' ')
+                .append(ALIAS);
+
+        if (keyValues != null) {
+            hql.append(" WHERE ").append(seekCondition(sort.keys(), 0, greaterThan));
+        }
+
+        hql.append(" ORDER BY ");
+        final String order = greaterThan ? " ASC" : " DESC";
+        for (int i = 0; i < sort.keys().size(); i++) {
+            if (i > 0) {
+                hql.append(", ");
+            }
+            hql.append(path(sort.keys().get(i))).append(order);
+        }
+
+        final Query<T> query = session.createQuery(hql.toString(), sort.entityClass());
+        if (keyValues != null) {
+            for (int i = 0; i < keyValues.length; i++) {
+                query.setParameter("k" + i, keyValues[i]);
+            }
+        }
+        query.setMaxResults(pageSize + 1);
+
+        return toPage(sort, query.list(), cursor != null, direction, pageSize);
+    }
+
+    /**
+     * Fetches a page with a criteria query.
+     */
+    static <T> KeysetPage<T> criteria(final Session session,
+                                      final KeysetSort<T> sort,
+                                      final String cursor,
+                                      final Direction direction,
+                                      final int pageSize) {
+        final Object[] keyValues = cursor == null ? null : sort.decode(cursor);
+        final boolean forward = direction == Direction.FORWARD;
+        final boolean greaterThan = forward != sort.descending();
+
+        final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+        final JpaCriteriaQuery<T> criteriaQuery = criteriaBuilder.createQuery(sort.entityClass());
+        final JpaRoot<T> root = criteriaQuery.from(sort.entityClass());
+        final List<KeysetSort.Key<T>> keys = sort.keys();
+
+        criteriaQuery.select(root);
+        if (keyValues != null) {
+            criteriaQuery.where(seekPredicate(criteriaBuilder, root, keys, keyValues, 0, greaterThan));
+        }
+
+        final List<Order> orders = new ArrayList<>(keys.size());
+        for (final KeysetSort.Key<T> key : keys) {
+            orders.add(greaterThan ? criteriaBuilder.asc(root.get(key.attribute())) : criteriaBuilder.desc(root.get(key.attribute())));
+        }
+        criteriaQuery.orderBy(orders);
+
+        final List<T> rows = session.createQuery(criteriaQuery)
+                .setMaxResults(pageSize + 1)
+                .list();
+        return toPage(sort, rows, cursor != null, direction, pageSize);
+    }
+
+    private static <T> KeysetPage<T> toPage(final KeysetSort<T> sort,
+                                            final List<T> fetchedRows,
+                                            final boolean hasCursor,
+                                            final Direction direction,
+                                            final int pageSize) {
+        // one row more than the page size was fetched to know whether there is another page in the fetch direction
+        final boolean moreInFetchDirection = fetchedRows.size() > pageSize;
+        final List<T> items = new ArrayList<>(moreInFetchDirection ? fetchedRows.subList(0, pageSize) : fetchedRows);
+
+        final boolean hasNext;
+        final boolean hasPrevious;
+        if (direction == Direction.FORWARD) {
+            hasNext = moreInFetchDirection;
+            hasPrevious = hasCursor;
+        } else {
+            // rows were fetched in reverse order, turn them back into sort order
+            Collections.reverse(items);
+            hasNext = hasCursor;
+            hasPrevious = moreInFetchDirection;
+        }
+
+        if (items.isEmpty()) {
+            return new KeysetPage<>(items, null, null);
+        }
+        return new KeysetPage<>(
+                items,
+                hasNext ? sort.encode(items.get(items.size() - 1)) : null,
+                hasPrevious ? sort.encode(items.get(0)) : null
+        );
+    }
+
+    /**
+     * {@code (k0, k1) > (:k0, :k1)} written as {@code k0 >= :k0 AND (k0 > :k0 OR k1 > :k1)}: unlike the equivalent
+     * {@code k0 > :k0 OR (k0 = :k0 AND k1 > :k1)} the leading {@code k0 >= :k0} is a range condition an index on the
+     * sort attributes can seek to on every database.
+     */
+    private static String seekCondition(final List<? extends KeysetSort.Key<?>> keys, final int index, final boolean greaterThan) {
+        final String path = path(keys.get(index));
+        final String strict = path + (greaterThan ? " > :k" : " < :k") + index;
+        if (index == keys.size() - 1) {
+            return strict;
+        }
+        final String inclusive = path + (greaterThan ? " >= :k" : " <= :k") + index;
+        return inclusive + " AND (" + strict + " OR " + seekCondition(keys, index + 1, greaterThan) + ")";
+    }
+
+    /**
+     * Criteria version of {@link #seekCondition(List, int, boolean)}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Predicate seekPredicate(final HibernateCriteriaBuilder criteriaBuilder,
+                                               final JpaRoot<T> root,
+                                               final List<KeysetSort.Key<T>> keys,
+                                               final Object[] keyValues,
+                                               final int index,
+                                               final boolean greaterThan) {
+        final Expression<Comparable> path = root.get(keys.get(index).attribute());
+        final Comparable value = (Comparable) keyValues[index];
+        final Predicate strict = greaterThan ? criteriaBuilder.greaterThan(path, value) : criteriaBuilder.lessThan(path, value);
+        if (index == keys.size() - 1) {
+            return strict;
+        }
+        final Predicate inclusive = greaterThan ? criteriaBuilder.greaterThanOrEqualTo(path, value) : criteriaBuilder.lessThanOrEqualTo(path, value);
+        return criteriaBuilder.and(inclusive, criteriaBuilder.or(strict, seekPredicate(criteriaBuilder, root, keys, keyValues, index + 1, greaterThan)));
+    }
+
+    private static String path(final KeysetSort.Key<?> key) {
+        return ALIAS + "." + key.attribute();
+    }
+
+    public enum Direction {
+        /**
+         * rows after the cursor, next page
+         */
+        FORWARD,
+
+        /**
+         * rows before the cursor, previous page
+         */
+        BACKWARD
+    }
+
+    /**
+     * @param items          rows of the page, in sort order
+     * @param nextCursor     cursor to fetch the following page with {@link Direction#FORWARD}, {@code null} on the last
+     *                       page
+     * @param previousCursor cursor to fetch the preceding page with {@link Direction#BACKWARD}, {@code null} on the
+     *                       first page
+     */
+    public record KeysetPage<T>(List<T> items, String nextCursor, String previousCursor) {
+
+        public boolean hasNext() {
+            return nextCursor != null;
+        }
+
+        public boolean hasPrevious() {
+            return previousCursor != null;
+        }
+
+    }
+
+}
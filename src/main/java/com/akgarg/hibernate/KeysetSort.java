@@ -0,0 +1,110 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sort order usable for keyset pagination: one or more attributes, the last one being unique (usually the id) so that
+ * the order is total, all sorted in the same direction.
+ * <p>
+ * Also encodes the sort key of a row into the opaque cursor handed out to clients and decodes it back.
+ *
+ * @param entityClass sorted entity
+ * @param descending  whether the attributes are sorted in descending order
+ * @param keys        sort attributes, most significant first
+ */
+public record KeysetSort<T>(Class<T> entityClass, boolean descending, List<Key<T>> keys) {
+
+    public static final KeysetSort<Student> STUDENT_BY_ID = ascending(Student.class, List.of(
+            new Key<>("id", Integer.class, Student::getId)));
+
+    public static final KeysetSort<Student> STUDENT_BY_ID_DESC = descending(Student.class, List.of(
+            new Key<>("id", Integer.class, Student::getId)));
+
+    public static final KeysetSort<Student> STUDENT_BY_NAME_AND_ID = ascending(Student.class, List.of(
+            new Key<>("name", String.class, Student::getName),
+            new Key<>("id", Integer.class, Student::getId)));
+
+    private static final String SEPARATOR = ".";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public KeysetSort {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("at least one sort key is required");
+        }
+        keys = List.copyOf(keys);
+    }
+
+    public static <T> KeysetSort<T> ascending(final Class<T> entityClass, final List<Key<T>> keys) {
+        return new KeysetSort<>(entityClass, false, keys);
+    }
+
+    public static <T> KeysetSort<T> descending(final Class<T> entityClass, final List<Key<T>> keys) {
+        return new KeysetSort<>(entityClass, true, keys);
+    }
+
+    /**
+     * Cursor pointing at the given row, pages fetched with it start right after (or right before) the row.
+     */
+    public String encode(final T row) {
+        final StringBuilder cursor = new StringBuilder();
+        for (final Key<T> key : keys) {
+            if (!cursor.isEmpty()) {
+                cursor.append(SEPARATOR);
+            }
+            final Object value = key.extractor().apply(row);
+            cursor.append(ENCODER.encodeToString(String.valueOf(value).getBytes(StandardCharsets.UTF_8)));
+        }
+        return cursor.toString();
+    }
+
+    /**
+     * Sort key values stored in the cursor, in the order of {@link #keys()}.
+     *
+     * @throws IllegalArgumentException if the cursor was not produced by this sort
+     */
+    public Object[] decode(final String cursor) {
+        final String[] parts = cursor.split("\\" + SEPARATOR, -1);
+        if (parts.length != keys.size()) {
+            throw new IllegalArgumentException("cursor does not match sort keys " + keys.stream().map(Key::attribute).toList());
+        }
+
+        final Object[] values = new Object[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                final String value = new String(DECODER.decode(parts[i]), StandardCharsets.UTF_8);
+                values[i] = parse(keys.get(i).type(), value);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("malformed cursor: " + cursor, e);
+        }
+        return values;
+    }
+
+    private static Object parse(final Class<?> type, final String value) {
+        if (type == String.class) {
+            return value;
+        }
+        if (type == Integer.class) {
+            return Integer.valueOf(value);
+        }
+        if (type == Long.class) {
+            return Long.valueOf(value);
+        }
+        throw new IllegalArgumentException("unsupported sort key type " + type.getName());
+    }
+
+    /**
+     * @param attribute entity attribute name
+     * @param type      attribute type, one of {@code String}, {@code Integer} or {@code Long}
+     * @param extractor reads the attribute from a loaded entity
+     */
+    public record Key<T>(String attribute, Class<?> type, Function<T, ?> extractor) {
+    }
+
+}
@@ -0,0 +1,320 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+
+/**
+ * Load generator running a mix of reads, writes and bulk mutations on {@link Student} from thousands of virtual
+ * threads against a session factory built by {@link HConf}, one session per operation, on an in-memory H2 database.
+ * <p>
+ * Reports throughput and latency percentiles per operation, virtual threads pinned to their carrier (see
+ * {@link PinningMonitor}) and whether operations were starved of connections by the {@link ConnectionPool}.
+ * <p>
+ * Usage: {@code LoadDriver [virtualThreads] [durationSeconds] [read/write/bulk weights, e.g. 80/15/5] [poolSize]}
+ */
+public class LoadDriver {
+
+    private static final Logger LOGGER = LogManager.getLogger(LoadDriver.class);
+    private static final Duration PINNING_THRESHOLD = Duration.ofMillis(5);
+    private static final Duration SAMPLING_INTERVAL = Duration.ofMillis(50);
+    private static final Duration MAX_SCHEDULING_DELAY = Duration.ofMillis(50);
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options = Options.defaults();
+        if (args.length > 0) {
+            options = options.withVirtualThreads(Integer.parseInt(args[0]));
+        }
+        if (args.length > 1) {
+            options = options.withDuration(Duration.ofSeconds(Long.parseLong(args[1])));
+        }
+        if (args.length > 2) {
+            final String[] weights = args[2].split("/");
+            options = options.withMix(Integer.parseInt(weights[0]), Integer.parseInt(weights[1]), Integer.parseInt(weights[2]));
+        }
+        final int poolSize = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+
+        final PoolSettings poolSettings = PoolSettings.embedded("load_driver")
+                .withPoolSize(poolSize, poolSize)
+                .withAcquireTimeout(Duration.ofSeconds(10));
+
+        try (ConnectionPool connectionPool = ConnectionPool.create(poolSettings);
+             SessionFactory sessionFactory = getSessionFactory(embeddedDatabaseSettings(connectionPool))) {
+            BulkInserter.insert(sessionFactory, HibernateUtils.syntheticStudents(options.tableSize()),
+                    BulkInserter.Options.defaults().withMode(BulkInserter.Mode.STATELESS));
+            connectionPool.resetMetrics();
+
+            LOGGER.info("running {} virtual threads for {} s, mix read/write/bulk {}/{}/{}, pool size {}",
+                    options.virtualThreads(), options.duration().toSeconds(),
+                    options.readWeight(), options.writeWeight(), options.bulkWeight(), poolSize);
+            final Report report = run(sessionFactory, connectionPool, options);
+            log(report);
+        }
+    }
+
+    /**
+     * Runs the load until {@link Options#duration()} has elapsed, the student table is expected to hold the students
+     * {@code 1..tableSize}.
+     */
+    static Report run(final SessionFactory sessionFactory,
+                      final ConnectionPool connectionPool,
+                      final Options options) throws InterruptedException {
+        final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+        final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        final AtomicLong nextStudentIndex = new AtomicLong(options.tableSize());
+        int peakPendingWaiters = 0;
+
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos = startNanos + options.duration().toNanos();
+        final PinningMonitor pinningMonitor = PinningMonitor.start(PINNING_THRESHOLD);
+        try {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < options.virtualThreads(); i++) {
+                    executor.submit(() -> {
+                        while (System.nanoTime() < deadlineNanos) {
+                            final Operation operation = options.nextOperation();
+                            final long operationStartNanos = System.nanoTime();
+                            try {
+                                operation.execute(sessionFactory, options, nextStudentIndex);
+                                latencies.get(operation).record(System.nanoTime() - operationStartNanos);
+                            } catch (RuntimeException e) {
+                                failures.computeIfAbsent(operation + " " + e.getClass().getSimpleName(), key -> new LongAdder()).increment();
+                            }
+                        }
+                    });
+                }
+
+                // the pool gauges are sampled while the load is running, the executor is closed (joined) afterward
+                while (System.nanoTime() < deadlineNanos) {
+                    peakPendingWaiters = Math.max(peakPendingWaiters, connectionPool.metrics().pendingWaiters());
+                    Thread.sleep(SAMPLING_INTERVAL);
+                }
+            }
+        } finally {
+            pinningMonitor.close();
+        }
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+        final Map<Operation, LatencyHistogram.Snapshot> latencySnapshots = new EnumMap<>(Operation.class);
+        latencies.forEach((operation, histogram) -> latencySnapshots.put(operation, histogram.snapshot()));
+        final Map<String, Long> failureCounts = new TreeMap<>();
+        failures.forEach((failure, count) -> failureCounts.put(failure, count.sum()));
+
+        return new Report(elapsed, latencySnapshots, failureCounts, connectionPool.metrics(), peakPendingWaiters, pinningMonitor.report());
+    }
+
+    private static void log(final Report report) {
+        LOGGER.info("{} operations in {} ms, {} ops/s, {} failed",
+                report.operations(), report.elapsed().toMillis(), String.format("%.0f", report.operationsPerSecond()), report.failedOperations());
+        report.latencies().forEach((operation, latency) -> LOGGER.info("{} latency: {}", operation, latency));
+        report.failures().forEach((failure, count) -> LOGGER.warn("failure {}: {}", failure, count));
+
+        final ConnectionPool.Metrics pool = report.pool();
+        LOGGER.info("connection acquire latency: {}", pool.acquireLatency());
+        LOGGER.info("connection usage latency: {}", pool.usageLatency());
+        LOGGER.info("peak threads waiting for a connection: {}, acquire timeouts: {}", report.peakPendingWaiters(), pool.acquireTimeouts());
+        if (report.connectionStarved()) {
+            LOGGER.warn("connection starvation: operations spend most of their time waiting for one of the {} pooled connections, "
+                    + "lower the concurrency or grow the pool", pool.total());
+        }
+
+        final PinningMonitor.Report pinning = report.pinning();
+        if (pinning.events() == 0) {
+            LOGGER.info("no virtual thread pinned for longer than {} ms", PINNING_THRESHOLD.toMillis());
+        } else {
+            LOGGER.warn("virtual threads pinned {} times for longer than {} ms: {}", pinning.events(), PINNING_THRESHOLD.toMillis(), pinning.pinnedDurations());
+            pinning.pinnedAt().forEach((frame, count) -> LOGGER.warn("pinned at {}: {}", frame, count));
+        }
+        LOGGER.info("virtual thread scheduling delay: {}", pinning.schedulingDelays());
+        if (pinning.schedulingDelays().p99Nanos() > MAX_SCHEDULING_DELAY.toNanos()) {
+            LOGGER.warn("carrier threads blocked or saturated: p99 scheduling delay above {} ms with {} carriers, "
+                    + "look for pinning or CPU bound work", MAX_SCHEDULING_DELAY.toMillis(), Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    public enum Operation {
+        /**
+         * loads a random student by id
+         */
+        READ {
+            @Override
+            void execute(final SessionFactory sessionFactory, final Options options, final AtomicLong nextStudentIndex) {
+                try (Session session = sessionFactory.openSession()) {
+                    session.beginTransaction();
+                    session.get(Student.class, ThreadLocalRandom.current().nextInt(1, options.tableSize() + 1));
+                    session.getTransaction().commit();
+                }
+            }
+        },
+
+        /**
+         * persists a new student
+         */
+        WRITE {
+            @Override
+            void execute(final SessionFactory sessionFactory, final Options options, final AtomicLong nextStudentIndex) {
+                try (Session session = sessionFactory.openSession()) {
+                    session.beginTransaction();
+                    try {
+                        session.persist(HibernateUtils.syntheticStudent(nextStudentIndex.getAndIncrement()));
+                        session.getTransaction().commit();
+                    } catch (RuntimeException e) {
+                        session.getTransaction().rollback();
+                        throw e;
+                    }
+                }
+            }
+        },
+
+        /**
+         * renames the team of a random range of {@link Options#bulkRangeSize()} students with one update statement
+         */
+        BULK {
+            @Override
+            void execute(final SessionFactory sessionFactory, final Options options, final AtomicLong nextStudentIndex) {
+                final int firstId = ThreadLocalRandom.current().nextInt(1, Math.max(2, options.tableSize() - options.bulkRangeSize() + 1));
+                try (Session session = sessionFactory.openSession()) {
+                    session.beginTransaction();
+                    try {
+                        session.createMutationQuery("UPDATE Student s SET s.team = :team WHERE s.id BETWEEN :firstId AND :lastId")
+                                .setParameter("team", "Team " + ThreadLocalRandom.current().nextInt(16))
+                                .setParameter("firstId", firstId)
+                                .setParameter("lastId", firstId + options.bulkRangeSize() - 1)
+                                .executeUpdate();
+                        session.getTransaction().commit();
+                    } catch (RuntimeException e) {
+                        session.getTransaction().rollback();
+                        throw e;
+                    }
+                }
+            }
+        };
+
+        abstract void execute(SessionFactory sessionFactory, Options options, AtomicLong nextStudentIndex);
+    }
+
+    /**
+     * @param virtualThreads number of virtual threads, each one runs operations back to back
+     * @param duration       how long the load runs
+     * @param readWeight     relative share of {@link Operation#READ}
+     * @param writeWeight    relative share of {@link Operation#WRITE}
+     * @param bulkWeight     relative share of {@link Operation#BULK}
+     * @param tableSize      number of preloaded students
+     * @param bulkRangeSize  number of students updated by one bulk mutation
+     */
+    public record Options(int virtualThreads,
+                          Duration duration,
+                          int readWeight,
+                          int writeWeight,
+                          int bulkWeight,
+                          int tableSize,
+                          int bulkRangeSize) {
+
+        public Options {
+            if (virtualThreads < 1) {
+                throw new IllegalArgumentException("virtualThreads must be positive");
+            }
+            if (duration == null || duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("duration must be positive");
+            }
+            if (readWeight < 0 || writeWeight < 0 || bulkWeight < 0 || readWeight + writeWeight + bulkWeight == 0) {
+                throw new IllegalArgumentException("invalid operation mix: " + readWeight + "/" + writeWeight + "/" + bulkWeight);
+            }
+            if (tableSize < 1 || bulkRangeSize < 1) {
+                throw new IllegalArgumentException("tableSize and bulkRangeSize must be positive");
+            }
+        }
+
+        public static Options defaults() {
+            return new Options(2_000, Duration.ofSeconds(10), 80, 15, 5, 10_000, 100);
+        }
+
+        public Options withVirtualThreads(final int virtualThreads) {
+            return new Options(virtualThreads, duration, readWeight, writeWeight, bulkWeight, tableSize, bulkRangeSize);
+        }
+
+        public Options withDuration(final Duration duration) {
+            return new Options(virtualThreads, duration, readWeight, writeWeight, bulkWeight, tableSize, bulkRangeSize);
+        }
+
+        public Options withMix(final int readWeight, final int writeWeight, final int bulkWeight) {
+            return new Options(virtualThreads, duration, readWeight, writeWeight, bulkWeight, tableSize, bulkRangeSize);
+        }
+
+        Operation nextOperation() {
+            final int value = ThreadLocalRandom.current().nextInt(readWeight + writeWeight + bulkWeight);
+            if (value < readWeight) {
+                return Operation.READ;
+            }
+            return value < readWeight + writeWeight ? Operation.WRITE : Operation.BULK;
+        }
+
+    }
+
+    /**
+     * @param elapsed            wall clock time of the run
+     * @param latencies          latency of the successful operations, per operation type
+     * @param failures           failed operations per operation type and exception
+     * @param pool               connection pool state and latencies at the end of the run
+     * @param peakPendingWaiters highest number of threads seen waiting for a connection
+     * @param pinning            virtual threads pinned during the run
+     */
+    public record Report(Duration elapsed,
+                         Map<Operation, LatencyHistogram.Snapshot> latencies,
+                         Map<String, Long> failures,
+                         ConnectionPool.Metrics pool,
+                         int peakPendingWaiters,
+                         PinningMonitor.Report pinning) {
+
+        public long operations() {
+            return latencies.values().stream().mapToLong(LatencyHistogram.Snapshot::count).sum();
+        }
+
+        public long failedOperations() {
+            return failures.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public double operationsPerSecond() {
+            return operations() / (elapsed.toNanos() / 1_000_000_000.0);
+        }
+
+        /**
+         * Whether connections were the bottleneck: acquisitions timed out, or waiting for a connection took at least
+         * half of the mean operation latency.
+         */
+        public boolean connectionStarved() {
+            if (pool.acquireTimeouts() > 0) {
+                return true;
+            }
+            final long operations = operations();
+            if (operations == 0) {
+                return false;
+            }
+            final long meanOperationNanos = latencies.values().stream()
+                    .mapToLong(latency -> latency.meanNanos() * latency.count())
+                    .sum() / operations;
+            return pool.acquireLatency().meanNanos() * 2 >= meanOperationNanos;
+        }
+
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Loads entities by a list of ids, a replacement for calling {@code session.get} once per id.
+ * <p>
+ * Ids of entities already managed by the session or stored in the second level cache are resolved without a
+ * statement. The remaining ids are fetched in chunks of {@link Options#batchSize()}, one {@code IN} list select per
+ * chunk, so loading N students costs {@code ceil(misses / batchSize)} round-trips instead of N.
+ * <p>
+ * The loaded entities are managed by the session, like entities loaded by {@code session.get}. The second level cache
+ * is read and filled as the session's cache mode allows.
+ */
+public final class MultiLoader {
+
+    private MultiLoader() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Entities with the given ids, in the order of the ids. An id given more than once gets the same instance at each
+     * of its positions.
+     *
+     * @param ids ids to load, without {@code null}s
+     * @return with {@link Missing#NULL} one element per id, {@code null} for ids without an entity; with
+     * {@link Missing#SKIP} only the found entities
+     */
+    static <T> List<T> load(final Session session,
+                            final Class<T> entityClass,
+                            final List<?> ids,
+                            final Options options) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        ids.forEach(id -> Objects.requireNonNull(id, "ids must not contain null"));
+
+        final List<T> entities = session.byMultipleIds(entityClass)
+                .enableSessionCheck(true)
+                .enableReturnOfDeletedEntities(false)
+                .enableOrderedReturn(true)
+                .withBatchSize(options.batchSize())
+                .multiLoad(ids);
+
+        if (options.missing() == Missing.NULL) {
+            return entities;
+        }
+        final List<T> found = new ArrayList<>(entities.size());
+        for (final T entity : entities) {
+            if (entity != null) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    public enum Missing {
+        /**
+         * a {@code null} in place of each id without an entity, so results and ids line up
+         */
+        NULL,
+
+        /**
+         * ids without an entity are left out
+         */
+        SKIP
+    }
+
+    /**
+     * @param batchSize maximum number of ids per select
+     * @param missing   what is returned for ids without an entity
+     */
+    public record Options(int batchSize, Missing missing) {
+
+        public Options {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+            }
+            if (missing == null) {
+                throw new IllegalArgumentException("missing must not be null");
+            }
+        }
+
+        public static Options defaults() {
+            return new Options(HConf.DEFAULT_BATCH_SIZE, Missing.NULL);
+        }
+
+        public Options withBatchSize(final int batchSize) {
+            return new Options(batchSize, missing);
+        }
+
+        public Options withMissing(final Missing missing) {
+            return new Options(batchSize, missing);
+        }
+
+    }
+
+}
@@ -5,13 +5,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.query.MutationQuery;
 import org.hibernate.query.NativeQuery;
 
-import java.util.List;
-
 import static com.akgarg.hibernate.HConf.getSessionFactory;
-import static com.akgarg.hibernate.HibernateUtils.saveStudents;
+import static com.akgarg.hibernate.HibernateUtils.insertStudentsAndClear;
 
 @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
 public class NativeQueryExample {
@@ -22,7 +19,7 @@ public class NativeQueryExample {
     public static void main(String[] args) {
         final SessionFactory sessionFactory = getSessionFactory();
         final Session session = sessionFactory.openSession();
-        saveStudents(session, TOTAL_NUMBER_OF_STUDENTS);
+        insertStudentsAndClear(session, TOTAL_NUMBER_OF_STUDENTS);
 
         selectAll(session);
         updateOne(session);
@@ -32,7 +29,9 @@ public class NativeQueryExample {
     }
 
     private static void updateOne(final Session session) {
-        final MutationQuery updateNativeMutationQuery = session.createNativeMutationQuery("UPDATE student s SET s.name = :name WHERE s.id = :id");
+        final NativeQuery<?> updateNativeMutationQuery = session.createNativeQuery("UPDATE student s SET s.name = :name WHERE s.id = :id", Object.class);
+        // without this hibernate can't know which tables the sql touches and invalidates every cached query result
+        updateNativeMutationQuery.addSynchronizedEntityClass(Student.class);
         updateNativeMutationQuery.setParameter("name", "John Doe");
         updateNativeMutationQuery.setParameter("id", 1);
 
@@ -44,9 +43,11 @@ public class NativeQueryExample {
     }
 
     private static void selectAll(final Session session) {
-        final NativeQuery<Student> selectAllStudents = session.createNativeQuery("SELECT * FROM student", Student.class);
-        final List<Student> students = selectAllStudents.list();
-        students.forEach(LOGGER::info);
+        // only logged, so the rows are mapped to views instead of managed entities
+        final NativeQuery<StudentView> selectAllStudents = StudentProjections.nativeQuery(session, StudentView.class, "SELECT id, name FROM student");
+        // rows are fetched and logged in chunks instead of loading the whole table with list()
+        final long rows = StreamingReader.forEach(session, selectAllStudents, StreamingReader.Options.defaults(), LOGGER::info);
+        LOGGER.info("number of selected rows: {}", rows);
     }
 
 }
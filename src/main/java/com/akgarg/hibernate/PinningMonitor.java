@@ -0,0 +1,115 @@
+package com.akgarg.hibernate;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects virtual threads pinned to their carrier thread, i.e. blocked while inside a {@code synchronized} block or a
+ * native frame, which keeps the carrier from running other virtual threads.
+ * <p>
+ * Listens to the {@code jdk.VirtualThreadPinned} JFR event in-process, no recording file is written. Pinning events are
+ * grouped by the first stack frame outside of the JDK, which usually is the driver or library code holding the
+ * monitor.
+ * <p>
+ * The event only covers virtual threads parking while pinned, carriers blocked in other ways (monitor contention,
+ * {@code Object.wait}, long CPU bound work) are caught by a probe virtual thread which sleeps for
+ * {@value #PROBE_INTERVAL_MILLIS} ms in a loop and records how late it is woken up.
+ */
+final class PinningMonitor implements AutoCloseable {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final long PROBE_INTERVAL_MILLIS = 10;
+
+    private final RecordingStream recordingStream;
+    private final LatencyHistogram pinnedDurations = new LatencyHistogram();
+    private final Map<String, LongAdder> pinnedAt = new ConcurrentHashMap<>();
+    private final LatencyHistogram schedulingDelays = new LatencyHistogram();
+    private final Thread probe;
+
+    private PinningMonitor(final Duration threshold) {
+        this.recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        this.probe = Thread.ofVirtual().name("pinning-probe").start(this::probe);
+    }
+
+    /**
+     * @param threshold pinning shorter than this is not reported
+     */
+    static PinningMonitor start(final Duration threshold) {
+        return new PinningMonitor(threshold);
+    }
+
+    private void onPinned(final RecordedEvent event) {
+        pinnedDurations.record(event.getDuration().toNanos());
+        pinnedAt.computeIfAbsent(firstApplicationFrame(event.getStackTrace()), frame -> new LongAdder()).increment();
+    }
+
+    private void probe() {
+        final long intervalNanos = PROBE_INTERVAL_MILLIS * 1_000_000;
+        while (!Thread.currentThread().isInterrupted()) {
+            final long sleepStartNanos = System.nanoTime();
+            try {
+                Thread.sleep(PROBE_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            schedulingDelays.record(System.nanoTime() - sleepStartNanos - intervalNanos);
+        }
+    }
+
+    private static String firstApplicationFrame(final RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (final RecordedFrame frame : stackTrace.getFrames()) {
+            final String className = frame.getMethod().getType().getName();
+            if (!className.startsWith("java.") && !className.startsWith("jdk.") && !className.startsWith("sun.")) {
+                return className + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "jdk internal";
+    }
+
+    Report report() {
+        final Map<String, Long> counts = new TreeMap<>();
+        pinnedAt.forEach((frame, count) -> counts.put(frame, count.sum()));
+        return new Report(pinnedDurations.snapshot(), counts, schedulingDelays.snapshot());
+    }
+
+    /**
+     * Stops listening, events recorded before are still delivered and included in {@link #report()}.
+     */
+    @Override
+    public void close() {
+        probe.interrupt();
+        recordingStream.stop();
+        recordingStream.close();
+    }
+
+    /**
+     * @param pinnedDurations  how long virtual threads stayed pinned, one entry per event
+     * @param pinnedAt         number of events per first non JDK stack frame
+     * @param schedulingDelays how much later than requested the probe virtual thread was woken up, a high delay means
+     *                         the carrier threads were blocked or saturated
+     */
+    public record Report(LatencyHistogram.Snapshot pinnedDurations,
+                         Map<String, Long> pinnedAt,
+                         LatencyHistogram.Snapshot schedulingDelays) {
+
+        public long events() {
+            return pinnedDurations.count();
+        }
+
+    }
+
+}
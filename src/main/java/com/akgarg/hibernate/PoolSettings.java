@@ -0,0 +1,73 @@
+package com.akgarg.hibernate;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link ConnectionPool}.
+ *
+ * @param jdbcUrl                jdbc url of the database
+ * @param username               database user
+ * @param password               database password
+ * @param minimumIdle            number of idle connections the pool tries to keep open
+ * @param maximumPoolSize        maximum number of open connections, idle plus in use
+ * @param acquireTimeout         how long a thread waits for a connection before the acquisition fails
+ * @param leakDetectionThreshold a connection held for longer than this is logged as a possible leak, zero disables
+ *                               leak detection
+ * @param statementCacheSize     number of prepared statements cached by the driver per connection, zero disables
+ *                               the cache
+ */
+public record PoolSettings(String jdbcUrl,
+                           String username,
+                           String password,
+                           int minimumIdle,
+                           int maximumPoolSize,
+                           Duration acquireTimeout,
+                           Duration leakDetectionThreshold,
+                           int statementCacheSize) {
+
+    public PoolSettings {
+        if (jdbcUrl == null || jdbcUrl.isBlank()) {
+            throw new IllegalArgumentException("jdbcUrl must not be blank");
+        }
+        if (minimumIdle < 0 || maximumPoolSize < 1 || minimumIdle > maximumPoolSize) {
+            throw new IllegalArgumentException("invalid pool size: minimumIdle=" + minimumIdle + ", maximumPoolSize=" + maximumPoolSize);
+        }
+        if (acquireTimeout == null || acquireTimeout.isNegative() || acquireTimeout.isZero()) {
+            throw new IllegalArgumentException("acquireTimeout must be positive");
+        }
+        if (leakDetectionThreshold == null || leakDetectionThreshold.isNegative()) {
+            throw new IllegalArgumentException("leakDetectionThreshold must not be negative");
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("statementCacheSize must not be negative");
+        }
+    }
+
+    public static PoolSettings of(final String jdbcUrl, final String username, final String password) {
+        return new PoolSettings(jdbcUrl, username, password, 2, 10, Duration.ofSeconds(30), Duration.ZERO, 250);
+    }
+
+    /**
+     * Settings for a pool over a private in-memory H2 database.
+     */
+    public static PoolSettings embedded(final String databaseName) {
+        return of(HConf.embeddedDatabaseUrl(databaseName), "sa", "");
+    }
+
+    public PoolSettings withPoolSize(final int minimumIdle, final int maximumPoolSize) {
+        return new PoolSettings(jdbcUrl, username, password, minimumIdle, maximumPoolSize, acquireTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+    public PoolSettings withAcquireTimeout(final Duration acquireTimeout) {
+        return new PoolSettings(jdbcUrl, username, password, minimumIdle, maximumPoolSize, acquireTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+    public PoolSettings withLeakDetectionThreshold(final Duration leakDetectionThreshold) {
+        return new PoolSettings(jdbcUrl, username, password, minimumIdle, maximumPoolSize, acquireTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+    public PoolSettings withStatementCacheSize(final int statementCacheSize) {
+        return new PoolSettings(jdbcUrl, username, password, minimumIdle, maximumPoolSize, acquireTimeout, leakDetectionThreshold, statementCacheSize);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.StatisticsSettings;
+import org.hibernate.query.MutationQuery;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaUpdate;
+import org.hibernate.query.criteria.JpaRoot;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+import static com.akgarg.hibernate.HibernateUtils.insertStudentsAndClear;
+
+/**
+ * Shows the query cache on an in-memory H2 database: repeated queries are answered from the cache, and every kind of
+ * bulk mutation (HQL, criteria, native) invalidates the cached results reading the {@code student} table so the next
+ * read sees the new data.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public class QueryCacheExample {
+
+    private static final Logger LOGGER = LogManager.getLogger(QueryCacheExample.class);
+    private static final int TOTAL_NUMBER_OF_STUDENTS = 20;
+    private static final int REPETITIONS = 10;
+
+    public static void main(String[] args) {
+        final Map<String, Object> settings = embeddedDatabaseSettings("query_cache_example");
+        settings.put(StatisticsSettings.GENERATE_STATISTICS, true);
+        final SessionFactory sessionFactory = getSessionFactory(settings);
+
+        final Session session = sessionFactory.openSession();
+        insertStudentsAndClear(session, TOTAL_NUMBER_OF_STUDENTS);
+        session.close();
+        sessionFactory.getStatistics().clear();
+
+        // only the first execution of every (query, parameters, page) combination goes to the database
+        for (int i = 0; i < REPETITIONS; i++) {
+            findAll(sessionFactory);
+            findPage(sessionFactory, 0);
+            findPage(sessionFactory, 5);
+        }
+        LOGGER.info("after repeated reads: {}", QueryCacheReport.of(sessionFactory));
+
+        updateWithHql(sessionFactory, "HQL Name");
+        verifyName(sessionFactory, "HQL Name");
+
+        updateWithCriteria(sessionFactory, "Criteria Name");
+        verifyName(sessionFactory, "Criteria Name");
+
+        updateWithNativeQuery(sessionFactory, "Native Name");
+        verifyName(sessionFactory, "Native Name");
+
+        LOGGER.info("after mutations: {}", QueryCacheReport.of(sessionFactory));
+        sessionFactory.close();
+    }
+
+    private static List<Student> findAll(final SessionFactory sessionFactory) {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery("FROM Student s ORDER BY s.id", Student.class)
+                    .setCacheable(true)
+                    .list();
+        }
+    }
+
+    private static List<Student> findPage(final SessionFactory sessionFactory, final int firstResult) {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery("FROM Student s ORDER BY s.id", Student.class)
+                    .setCacheable(true)
+                    .setFirstResult(firstResult)
+                    .setMaxResults(5)
+                    .list();
+        }
+    }
+
+    private static void updateWithHql(final SessionFactory sessionFactory, final String name) {
+        try (Session session = sessionFactory.openSession()) {
+            final MutationQuery updateQuery = session.createMutationQuery("UPDATE Student s SET s.name = :name WHERE s.id = :id");
+            updateQuery.setParameter("name", name);
+            updateQuery.setParameter("id", 1);
+            session.beginTransaction();
+            updateQuery.executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    private static void updateWithCriteria(final SessionFactory sessionFactory, final String name) {
+        try (Session session = sessionFactory.openSession()) {
+            final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            final JpaCriteriaUpdate<Student> criteriaUpdate = criteriaBuilder.createCriteriaUpdate(Student.class);
+            final JpaRoot<Student> root = criteriaUpdate.from(Student.class);
+            criteriaUpdate.set("name", name);
+            criteriaUpdate.where(criteriaBuilder.equal(root.get("id"), 1));
+            session.beginTransaction();
+            session.createMutationQuery(criteriaUpdate).executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    private static void updateWithNativeQuery(final SessionFactory sessionFactory, final String name) {
+        try (Session session = sessionFactory.openSession()) {
+            final NativeQuery<?> updateQuery = session.createNativeQuery("UPDATE student SET name = :name WHERE id = :id", Object.class);
+            updateQuery.addSynchronizedEntityClass(Student.class);
+            updateQuery.setParameter("name", name);
+            updateQuery.setParameter("id", 1);
+            session.beginTransaction();
+            updateQuery.executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    private static void verifyName(final SessionFactory sessionFactory, final String expectedName) {
+        final String firstName = findAll(sessionFactory).get(0).getName();
+        final String firstNameOfPage = findPage(sessionFactory, 0).get(0).getName();
+        if (!expectedName.equals(firstName) || !expectedName.equals(firstNameOfPage)) {
+            throw new IllegalStateException("stale query cache read, expected '" + expectedName + "' but got '" + firstName + "' and '" + firstNameOfPage + "'");
+        }
+        LOGGER.info("cached queries see the new name '{}'", expectedName);
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.util.Map;
+
+/**
+ * Query cache effectiveness of a session factory. Hit, miss and put counts require
+ * {@code hibernate.generate_statistics=true}.
+ *
+ * @param hits                 query executions answered from the query cache
+ * @param misses               query executions which had to go to the database, including stale cached results
+ * @param puts                 query results put into the query cache
+ * @param invalidationsBySpace number of invalidations per table
+ */
+public record QueryCacheReport(long hits, long misses, long puts, Map<String, Long> invalidationsBySpace) {
+
+    static QueryCacheReport of(final SessionFactory sessionFactory) {
+        final Statistics statistics = sessionFactory.getStatistics();
+        return new QueryCacheReport(
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount(),
+                InvalidationCountingTimestampsCacheFactory.of(sessionFactory).invalidationCounts()
+        );
+    }
+
+    public double hitRatio() {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, puts=%d, hitRatio=%.2f, invalidations=%s",
+                hits, misses, puts, hitRatio(), invalidationsBySpace);
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Query plan cache effectiveness of a session factory, requires {@code hibernate.generate_statistics=true}.
+ *
+ * @param hits   query executions which reused an already translated plan
+ * @param misses query executions which had to parse or translate the query
+ */
+public record QueryPlanCacheReport(long hits, long misses) {
+
+    static QueryPlanCacheReport of(final SessionFactory sessionFactory) {
+        final Statistics statistics = sessionFactory.getStatistics();
+        return new QueryPlanCacheReport(statistics.getQueryPlanCacheHitCount(), statistics.getQueryPlanCacheMissCount());
+    }
+
+    public double hitRatio() {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, hitRatio=%.2f", hits, misses, hitRatio());
+    }
+
+}
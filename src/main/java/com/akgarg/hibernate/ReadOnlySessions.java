@@ -0,0 +1,30 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/**
+ * Sessions for data which is only read.
+ * <p>
+ * Entities loaded read-only get no snapshot of their loaded state, so they take less memory and are skipped by the
+ * dirty check at flush. Changes made to them are never written to the database.
+ */
+public final class ReadOnlySessions {
+
+    private ReadOnlySessions() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Session loading every entity read-only and never flushing on its own (queries do not trigger an auto flush).
+     */
+    static Session open(final SessionFactory sessionFactory) {
+        final Session session = sessionFactory.withOptions()
+                .flushMode(FlushMode.MANUAL)
+                .openSession();
+        session.setDefaultReadOnly(true);
+        return session;
+    }
+
+}
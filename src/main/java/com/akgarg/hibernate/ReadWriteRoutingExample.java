@@ -0,0 +1,153 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudent;
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudents;
+
+/**
+ * Routes reads and writes through a {@link RoutingDataSource} over three in-memory H2 databases, one standing in for
+ * the primary and two for its replicas.
+ * <p>
+ * The replicas get the same students as the primary once, before the example starts, and nothing after that: every
+ * later write is only visible on the primary, as if replication lagged behind forever.
+ * <p>
+ * Usage: {@code ReadWriteRoutingExample [ROUND_ROBIN|LEAST_LOADED]}
+ */
+public class ReadWriteRoutingExample {
+
+    private static final Logger LOGGER = LogManager.getLogger(ReadWriteRoutingExample.class);
+    private static final int TOTAL_NUMBER_OF_STUDENTS = 1_000;
+    private static final int REPLICAS = 2;
+
+    public static void main(String[] args) {
+        final RoutingDataSource.Balancing balancing = args.length > 0
+                ? RoutingDataSource.Balancing.valueOf(args[0])
+                : RoutingDataSource.Balancing.ROUND_ROBIN;
+
+        final List<ConnectionPool> replicas = new ArrayList<>();
+        try (ConnectionPool primary = ConnectionPool.create(PoolSettings.embedded("routing_example_primary"))) {
+            for (int i = 1; i <= REPLICAS; i++) {
+                final ConnectionPool replica = ConnectionPool.create(PoolSettings.embedded("routing_example_replica_" + i));
+                replicas.add(replica);
+                seed(embeddedDatabaseSettings(replica));
+            }
+
+            final RoutingDataSource routingDataSource = RoutingDataSource.create(primary, replicas, balancing);
+            try (SessionFactory sessionFactory = getSessionFactory(embeddedDatabaseSettings(routingDataSource))) {
+                insertStudents(sessionFactory);
+                LOGGER.info("after seeding: {}", routingDataSource.metrics());
+
+                for (int i = 0; i < 2 * REPLICAS; i++) {
+                    try (Session session = routingDataSource.openReadOnlySession(sessionFactory)) {
+                        LOGGER.info("read-only session counted {} students", countStudents(session, "%"));
+                    }
+                }
+                LOGGER.info("after {} read-only sessions ({}): {}", 2 * REPLICAS, balancing, routingDataSource.metrics());
+
+                readYourWrites(routingDataSource, sessionFactory);
+                readYourWritesThroughTheCache(routingDataSource, sessionFactory);
+                writeInReadOnlySession(routingDataSource, sessionFactory);
+                LOGGER.info("at the end: {}", routingDataSource.metrics());
+            }
+        } finally {
+            replicas.forEach(ConnectionPool::close);
+        }
+    }
+
+    private static void seed(final Map<String, Object> settings) {
+        try (SessionFactory sessionFactory = getSessionFactory(settings)) {
+            insertStudents(sessionFactory);
+        }
+    }
+
+    private static void insertStudents(final SessionFactory sessionFactory) {
+        BulkInserter.insert(sessionFactory, syntheticStudents(TOTAL_NUMBER_OF_STUDENTS),
+                BulkInserter.Options.defaults().withMode(BulkInserter.Mode.STATELESS));
+    }
+
+    private static void readYourWrites(final RoutingDataSource routingDataSource, final SessionFactory sessionFactory) {
+        final String name = "Student written to the primary";
+        try (Session session = routingDataSource.openSession(sessionFactory)) {
+            final Student student = syntheticStudent(0);
+            student.setName(name);
+            session.beginTransaction();
+            session.persist(student);
+            session.getTransaction().commit();
+
+            final long found = RoutingDataSource.inReadOnlyTransaction(session, s -> countStudents(s, name));
+            LOGGER.info("read-only transaction of the writing session found {} new student (primary)", found);
+        }
+
+        try (Session session = routingDataSource.openReadOnlySession(sessionFactory)) {
+            LOGGER.info("new read-only session found {} new student (replica, not replicated)", countStudents(session, name));
+        }
+    }
+
+    /**
+     * The bulk update evicts the cached students, the replica read in between must not put its stale copy back.
+     */
+    private static void readYourWritesThroughTheCache(final RoutingDataSource routingDataSource, final SessionFactory sessionFactory) {
+        final String name = "Student renamed on the primary";
+        try (Session session = routingDataSource.openSession(sessionFactory)) {
+            session.beginTransaction();
+            session.createMutationQuery("UPDATE Student s SET s.name = :name WHERE s.id = :id")
+                    .setParameter("name", name)
+                    .setParameter("id", 1)
+                    .executeUpdate();
+            session.getTransaction().commit();
+
+            try (Session readOnlySession = routingDataSource.openReadOnlySession(sessionFactory)) {
+                LOGGER.info("read-only session got '{}' (replica, not replicated)", readOnlySession.get(Student.class, 1).getName());
+            }
+
+            final String readName = session.get(Student.class, 1).getName();
+            if (!name.equals(readName)) {
+                throw new IllegalStateException("stale read after write, expected '" + name + "' but got '" + readName + "'");
+            }
+            LOGGER.info("writing session got '{}' (primary)", readName);
+        }
+    }
+
+    private static void writeInReadOnlySession(final RoutingDataSource routingDataSource, final SessionFactory sessionFactory) {
+        try (Session session = routingDataSource.openReadOnlySession(sessionFactory)) {
+            session.beginTransaction();
+            final int updated = updateTeams(session);
+            session.getTransaction().commit();
+            LOGGER.info("write as first statement of a read-only session updated {} students on the primary: {}",
+                    updated, routingDataSource.metrics());
+        }
+
+        try (Session session = routingDataSource.openReadOnlySession(sessionFactory)) {
+            session.beginTransaction();
+            countStudents(session, "%");
+            updateTeams(session);
+            session.getTransaction().commit();
+        } catch (IllegalStateException e) {
+            LOGGER.info("write after a read from a replica rejected: {}", e.getMessage());
+        }
+    }
+
+    private static int updateTeams(final Session session) {
+        return session.createMutationQuery("UPDATE Student s SET s.team = :team")
+                .setParameter("team", "Team primary")
+                .executeUpdate();
+    }
+
+    private static long countStudents(final Session session, final String namePattern) {
+        return session.createSelectionQuery("SELECT count(s) FROM Student s WHERE s.name LIKE :name", Long.class)
+                .setParameter("name", namePattern)
+                .getSingleResult();
+    }
+
+}
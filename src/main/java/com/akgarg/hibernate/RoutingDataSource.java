@@ -0,0 +1,311 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.JdbcSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Data source sending the connections of read-only sessions to replica {@link ConnectionPool}s and everything else
+ * to the primary pool.
+ * <p>
+ * Pass {@link #hibernateSettings()} to {@link HConf#getSessionFactory(Map)} and open sessions with
+ * {@link #openSession(SessionFactory)} or {@link #openReadOnlySession(SessionFactory)}. A session opened this way
+ * picks the pool each time it acquires a connection, that is with the first statement of each transaction: a replica
+ * while the session is {@link Session#isDefaultReadOnly() read-only} and has not written anything, the primary
+ * otherwise. Once a session has written it stays on the primary, so it reads its own writes even when the replicas
+ * lag behind. A write following a read in a transaction connected to a replica fails, the transaction cannot move
+ * to the primary halfway. While connected to a replica a session reads the second level and query caches but does
+ * not put into them, a lagging replica would otherwise put back rows a commit on the primary just evicted, and the
+ * writing session would read them from the cache. Sessions opened directly from the factory, schema tooling and id
+ * generation always use the primary.
+ * <p>
+ * The pools are owned by the caller and have to be closed after the session factory.
+ */
+public final class RoutingDataSource implements DataSource {
+
+    /**
+     * pool chosen by the session acquiring a connection on the current thread, the primary when not set
+     */
+    private static final ThreadLocal<Route> ROUTE = new ThreadLocal<>();
+
+    private final ConnectionPool primary;
+    private final List<ConnectionPool> replicas;
+    private final Balancing balancing;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder primaryConnections = new LongAdder();
+    private final List<LongAdder> replicaConnections;
+
+    private RoutingDataSource(final ConnectionPool primary, final List<ConnectionPool> replicas, final Balancing balancing) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.balancing = balancing;
+        this.replicaConnections = IntStream.range(0, replicas.size()).mapToObj(i -> new LongAdder()).toList();
+    }
+
+    /**
+     * @param replicas pools over copies of the primary database, reads go to the primary when there are none
+     */
+    public static RoutingDataSource create(final ConnectionPool primary,
+                                           final List<ConnectionPool> replicas,
+                                           final Balancing balancing) {
+        if (primary == null || replicas == null || balancing == null) {
+            throw new IllegalArgumentException("primary, replicas and balancing must not be null");
+        }
+        return new RoutingDataSource(primary, replicas, balancing);
+    }
+
+    /**
+     * Settings making hibernate take its connections from this data source, JDBC url and credentials configured in
+     * {@link HConf} are ignored.
+     */
+    public Map<String, Object> hibernateSettings() {
+        return Map.of(
+                JdbcSettings.JAKARTA_NON_JTA_DATASOURCE, this,
+                JdbcSettings.CONNECTION_PROVIDER_DISABLES_AUTOCOMMIT, true
+        );
+    }
+
+    /**
+     * Session writing to the primary, whose transactions read from a replica while the session is set
+     * {@link Session#setDefaultReadOnly(boolean) read-only} and has not written anything yet.
+     */
+    public Session openSession(final SessionFactory sessionFactory) {
+        return open(sessionFactory, false);
+    }
+
+    /**
+     * {@link ReadOnlySessions#open(SessionFactory) Read-only session} reading from a replica.
+     */
+    public Session openReadOnlySession(final SessionFactory sessionFactory) {
+        return open(sessionFactory, true);
+    }
+
+    /**
+     * Runs the given work in a read-only transaction of the given session, which reads from a replica unless the
+     * session has written before. The session must not be holding a connection, i.e. be outside a transaction.
+     */
+    public static <T> T inReadOnlyTransaction(final Session session, final Function<Session, T> work) {
+        final boolean defaultReadOnly = session.isDefaultReadOnly();
+        final FlushMode flushMode = session.getHibernateFlushMode();
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        try {
+            session.beginTransaction();
+            final T result = work.apply(session);
+            session.getTransaction().commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.setDefaultReadOnly(defaultReadOnly);
+            session.setHibernateFlushMode(flushMode);
+        }
+    }
+
+    private Session open(final SessionFactory sessionFactory, final boolean readOnly) {
+        final StatementInspector factoryInspector = ((SessionFactoryImplementor) sessionFactory)
+                .getSessionFactoryOptions()
+                .getStatementInspector();
+        final SessionRouting routing = new SessionRouting(factoryInspector);
+        final Session session = sessionFactory.withOptions()
+                .statementInspector(routing)
+                .eventListeners(routing)
+                .openSession();
+        routing.session = session;
+        if (readOnly) {
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            session.setDefaultReadOnly(true);
+        }
+        return session;
+    }
+
+    public Metrics metrics() {
+        return new Metrics(primaryConnections.sum(), replicaConnections.stream().map(LongAdder::sum).toList());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ROUTE.get() != Route.REPLICA || replicas.isEmpty()) {
+            primaryConnections.increment();
+            return primary.dataSource().getConnection();
+        }
+
+        final int replica = switch (balancing) {
+            case ROUND_ROBIN -> Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+            case LEAST_LOADED -> leastLoadedReplica();
+        };
+        replicaConnections.get(replica).increment();
+        final Connection connection = replicas.get(replica).dataSource().getConnection();
+        connection.setReadOnly(true);
+        return connection;
+    }
+
+    /**
+     * Replica with the fewest active connections, ties are broken in turn so that idle replicas share the load.
+     */
+    private int leastLoadedReplica() {
+        final int first = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        int leastLoaded = first;
+        int leastActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            final int replica = (first + i) % replicas.size();
+            final int active = replicas.get(replica).activeConnections();
+            if (active < leastActive) {
+                leastLoaded = replica;
+                leastActive = active;
+            }
+        }
+        return leastLoaded;
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("the credentials are configured in the pools");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.dataSource().getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException {
+        primary.dataSource().setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException {
+        primary.dataSource().setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.dataSource().getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.dataSource().getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> type) throws SQLException {
+        if (type.isInstance(this)) {
+            return type.cast(this);
+        }
+        throw new SQLException(getClass().getSimpleName() + " does not wrap " + type.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> type) {
+        return type.isInstance(this);
+    }
+
+    public enum Balancing {
+        /**
+         * replicas in turn
+         */
+        ROUND_ROBIN,
+
+        /**
+         * replica with the fewest connections in use
+         */
+        LEAST_LOADED
+    }
+
+    private enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    /**
+     * @param primaryConnections connections handed out by the primary pool
+     * @param replicaConnections connections handed out per replica pool, in the order the replicas were given
+     */
+    public record Metrics(long primaryConnections, List<Long> replicaConnections) {
+    }
+
+    /**
+     * Per session routing state. Hibernate acquires the connection on the thread using the session, right after
+     * {@link #jdbcConnectionAcquisitionStart()}, which is where the route for the data source is set.
+     */
+    private static final class SessionRouting implements SessionEventListener, StatementInspector {
+
+        private static final long serialVersionUID = 1L;
+
+        private final StatementInspector factoryInspector;
+        private Session session;
+        private boolean wrote;
+        private Route connectionRoute;
+        private CacheMode cacheModeBeforeReplica;
+
+        private SessionRouting(final StatementInspector factoryInspector) {
+            this.factoryInspector = factoryInspector;
+        }
+
+        @Override
+        public void jdbcConnectionAcquisitionStart() {
+            connectionRoute = session != null && session.isDefaultReadOnly() && !wrote ? Route.REPLICA : Route.PRIMARY;
+            if (connectionRoute == Route.REPLICA && session.getCacheMode().isPutEnabled()) {
+                cacheModeBeforeReplica = session.getCacheMode();
+                session.setCacheMode(cacheModeBeforeReplica.isGetEnabled() ? CacheMode.GET : CacheMode.IGNORE);
+            }
+            ROUTE.set(connectionRoute);
+        }
+
+        @Override
+        public void jdbcConnectionAcquisitionEnd() {
+            ROUTE.remove();
+        }
+
+        @Override
+        public void jdbcConnectionReleaseEnd() {
+            if (cacheModeBeforeReplica != null) {
+                session.setCacheMode(cacheModeBeforeReplica);
+                cacheModeBeforeReplica = null;
+            }
+            connectionRoute = null;
+        }
+
+        @Override
+        public String inspect(final String sql) {
+            final String inspected = factoryInspector == null ? sql : factoryInspector.inspect(sql);
+            if (!isRead(inspected)) {
+                if (connectionRoute == Route.REPLICA) {
+                    throw new IllegalStateException("write in a read-only transaction, which is connected to a replica: " + inspected);
+                }
+                wrote = true;
+            }
+            return inspected;
+        }
+
+        private static boolean isRead(final String sql) {
+            final String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+            return statement.startsWith("select") || statement.startsWith("with") || statement.startsWith("values");
+        }
+
+    }
+
+}
@@ -0,0 +1,440 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import jakarta.persistence.PersistenceException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.sequence.SequenceSupport;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.SelectionQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link Student} storage spread over several databases (shards), each one behind its own session factory.
+ * <p>
+ * A student lives on the shard selected by a hash of its id, so get, update and delete go to exactly one shard. Ids
+ * are drawn in blocks of {@value #ID_BLOCK_SIZE} from the {@value #ID_SEQUENCE} sequence of the first shard, which
+ * keeps them unique across all shards; students are inserted with their id assigned by a native insert.
+ * <p>
+ * Reads over all students are scatter-gather: every shard runs the query on its own virtual thread and streams its
+ * rows through a small buffer. Ordered reads merge the already sorted shard streams with a k-way merge, a limit is
+ * pushed down to every shard as {@code offset + limit} rows, and keyset pages only ask each shard for {@code limit}
+ * rows after the last seen id. Memory stays bounded by the buffers whatever the size of the shards.
+ * <p>
+ * Students are written with native statements and HQL mutations, the search index of {@link StudentSearch} is not
+ * maintained for them.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public final class ShardedStudentStore implements AutoCloseable {
+
+    static final String ID_SEQUENCE = "student_shard_seq";
+    static final int ID_BLOCK_SIZE = HConf.DEFAULT_BATCH_SIZE;
+
+    private static final Logger LOGGER = LogManager.getLogger(ShardedStudentStore.class);
+    private static final String INSERT = "INSERT INTO student (id, name, team) VALUES (:id, :name, :team)";
+    private static final int MERGE_BUFFER_SIZE = 256;
+    private static final Object END = new Object();
+
+    private final List<SessionFactory> shards;
+    private final List<AutoCloseable> ownedResources;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SequenceSupport sequenceSupport;
+    private final ReentrantLock idLock = new ReentrantLock();
+    private long nextId = 1;
+    private long lastBlockId = 0;
+
+    private ShardedStudentStore(final List<SessionFactory> shards, final List<AutoCloseable> ownedResources) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        this.ownedResources = List.copyOf(ownedResources);
+        this.sequenceSupport = shards.getFirst().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect().getSequenceSupport();
+        if (!sequenceSupport.supportsSequences()) {
+            throw new IllegalArgumentException("the database of the first shard has no sequences to draw the student ids from");
+        }
+        createIdSequence();
+    }
+
+    /**
+     * Store over the given session factories, which stay owned by the caller. The order of the shards must never
+     * change, it determines where each student lives.
+     */
+    static ShardedStudentStore create(final List<SessionFactory> shards) {
+        return new ShardedStudentStore(shards, List.of());
+    }
+
+    /**
+     * Store over the given number of private in-memory H2 databases, each behind its own {@link ConnectionPool}.
+     * They are closed with the store.
+     */
+    static ShardedStudentStore embedded(final String databaseName, final int shardCount) {
+        final List<SessionFactory> shards = new ArrayList<>(shardCount);
+        final List<AutoCloseable> ownedResources = new ArrayList<>(2 * shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            final ConnectionPool connectionPool = ConnectionPool.create(PoolSettings.embedded(databaseName + "_shard_" + i));
+            final SessionFactory sessionFactory = HConf.getSessionFactory(HConf.embeddedDatabaseSettings(connectionPool));
+            shards.add(sessionFactory);
+            // session factories are closed before their pools
+            ownedResources.addFirst(connectionPool);
+            ownedResources.addFirst(sessionFactory);
+        }
+        return new ShardedStudentStore(shards, ownedResources);
+    }
+
+    int shardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Index of the shard holding the student with the given id.
+     */
+    int shardOf(final int id) {
+        // murmur3 finalizer, consecutive ids of a block are spread over all shards
+        int hash = id;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shards.size());
+    }
+
+    /**
+     * Assigns a new id to the given student and inserts it into its shard.
+     */
+    Student persist(final Student student) {
+        student.setId(nextId());
+        inTransaction(shards.get(shardOf(student.getId())), session -> insert(session, student));
+        return student;
+    }
+
+    /**
+     * Assigns new ids to the given students and inserts them, one transaction per shard, the shards in parallel.
+     */
+    void persistAll(final Collection<Student> students) {
+        final List<List<Student>> studentsPerShard = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            studentsPerShard.add(new ArrayList<>());
+        }
+        for (final Student student : students) {
+            student.setId(nextId());
+            studentsPerShard.get(shardOf(student.getId())).add(student);
+        }
+        scatter(shard -> inTransaction(shards.get(shard), session -> {
+            studentsPerShard.get(shard).forEach(student -> insert(session, student));
+            return studentsPerShard.get(shard).size();
+        }));
+    }
+
+    Optional<Student> get(final int id) {
+        try (Session session = ReadOnlySessions.open(shards.get(shardOf(id)))) {
+            return Optional.ofNullable(session.get(Student.class, id));
+        }
+    }
+
+    /**
+     * @return whether a student with the given id existed
+     */
+    boolean updateTeam(final int id, final String team) {
+        return inTransaction(shards.get(shardOf(id)), session -> {
+            final Student student = session.get(Student.class, id);
+            if (student == null) {
+                return false;
+            }
+            student.setTeam(team);
+            return true;
+        });
+    }
+
+    /**
+     * @return whether a student with the given id existed
+     */
+    boolean delete(final int id) {
+        return inTransaction(shards.get(shardOf(id)), session -> StudentQueries.mutate(session, StudentQueries.DELETE_BY_ID)
+                .setParameter("id", id)
+                .executeUpdate() > 0);
+    }
+
+    long count() {
+        return scatter(shard -> {
+            try (Session session = shards.get(shard).openSession()) {
+                return session.createSelectionQuery("SELECT count(s) FROM Student s", Long.class).getSingleResult();
+            }
+        }).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * All students of all shards, in no particular order.
+     */
+    List<Student> findAll() {
+        final List<Student> students = new ArrayList<>();
+        scatter(shard -> {
+            try (Session session = ReadOnlySessions.open(shards.get(shard))) {
+                return session.createSelectionQuery("FROM Student s", Student.class).list();
+            }
+        }).forEach(students::addAll);
+        return students;
+    }
+
+    /**
+     * A page of all students sorted by id, the offset equivalent of {@code setFirstResult}/{@code setMaxResults}.
+     * Every shard sends at most {@code offset + limit} rows.
+     */
+    List<Student> findAll(final Order order, final int offset, final int limit) {
+        final List<Student> students = new ArrayList<>(limit);
+        merge(order, null, offset, limit, students::add);
+        return students;
+    }
+
+    /**
+     * A keyset page of all students sorted by id, starting after the given id ({@code null} for the first page).
+     * Every shard sends at most {@code limit} rows whatever the page.
+     */
+    List<Student> findAfter(final Order order, final Integer afterId, final int limit) {
+        final List<Student> students = new ArrayList<>(limit);
+        merge(order, afterId, 0, limit, students::add);
+        return students;
+    }
+
+    /**
+     * Passes all students sorted by id to the given action, in constant memory.
+     *
+     * @return number of students
+     */
+    long forEach(final Order order, final Consumer<Student> action) {
+        return merge(order, null, 0, Long.MAX_VALUE, action);
+    }
+
+    /**
+     * Closes the session factories and pools created by {@link #embedded(String, int)}.
+     */
+    @Override
+    public void close() {
+        executor.close();
+        for (final AutoCloseable resource : ownedResources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                LOGGER.warn("failed to close shard resource {}", resource, e);
+            }
+        }
+    }
+
+    private void createIdSequence() {
+        try (Session session = shards.getFirst().openSession()) {
+            session.beginTransaction();
+            try {
+                session.createNativeMutationQuery(sequenceSupport.getCreateSequenceString(ID_SEQUENCE, 1, ID_BLOCK_SIZE)).executeUpdate();
+                session.getTransaction().commit();
+            } catch (PersistenceException e) {
+                session.getTransaction().rollback();
+                LOGGER.debug("id sequence {} not created, assuming that it exists: {}", ID_SEQUENCE, e.getMessage());
+            }
+        }
+    }
+
+    private int nextId() {
+        idLock.lock();
+        try {
+            if (nextId > lastBlockId) {
+                try (Session session = shards.getFirst().openSession()) {
+                    nextId = session.createNativeQuery(sequenceSupport.getSequenceNextValString(ID_SEQUENCE), Long.class).getSingleResult();
+                }
+                lastBlockId = nextId + ID_BLOCK_SIZE - 1;
+            }
+            return Math.toIntExact(nextId++);
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    private static int insert(final Session session, final Student student) {
+        final NativeQuery<?> insert = session.createNativeQuery(INSERT, Object.class);
+        // only the student cache and query spaces are invalidated, not every region
+        return insert.addSynchronizedEntityClass(Student.class)
+                .setParameter("id", student.getId())
+                .setParameter("name", student.getName())
+                .setParameter("team", student.getTeam())
+                .executeUpdate();
+    }
+
+    private static <T> T inTransaction(final SessionFactory shard, final Function<Session, T> work) {
+        try (Session session = shard.openSession()) {
+            session.beginTransaction();
+            try {
+                final T result = work.apply(session);
+                session.getTransaction().commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Runs the given work for every shard in parallel, results in shard order.
+     */
+    private <T> List<T> scatter(final Function<Integer, T> work) {
+        final List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            final int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> work.apply(shard), executor));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    private long merge(final Order order, final Integer afterId, final long offset, final long limit, final Consumer<Student> action) {
+        final StringBuilder hql = new StringBuilder("FROM Student s");
+        if (afterId != null) {
+            hql.append(" WHERE s.id ").append(order == Order.ID_ASC ? '>' : '<').append(" :afterId");
+        }
+        hql.append(" ORDER BY s.id ").append(order == Order.ID_ASC ? "ASC" : "DESC");
+        final long rowsPerShard = limit == Long.MAX_VALUE ? 0 : offset + limit;
+
+        final List<ShardCursor> cursors = new ArrayList<>(shards.size());
+        try {
+            for (final SessionFactory shard : shards) {
+                cursors.add(new ShardCursor(shard, hql.toString(), afterId, rowsPerShard > Integer.MAX_VALUE ? 0 : (int) rowsPerShard));
+            }
+            final PriorityQueue<ShardCursor> heads = new PriorityQueue<>(shards.size(),
+                    Comparator.comparing((ShardCursor cursor) -> cursor.head, order.comparator()));
+            for (final ShardCursor cursor : cursors) {
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+
+            long skipped = 0;
+            long emitted = 0;
+            while (!heads.isEmpty() && emitted < limit) {
+                final ShardCursor cursor = heads.poll();
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    action.accept(cursor.head);
+                    emitted++;
+                }
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+            return emitted;
+        } finally {
+            cursors.forEach(ShardCursor::close);
+        }
+    }
+
+    public enum Order {
+        ID_ASC(Comparator.comparingInt(Student::getId)),
+        ID_DESC(Comparator.comparingInt(Student::getId).reversed());
+
+        private final Comparator<Student> comparator;
+
+        Order(final Comparator<Student> comparator) {
+            this.comparator = comparator;
+        }
+
+        Comparator<Student> comparator() {
+            return comparator;
+        }
+    }
+
+    private record Failure(RuntimeException cause) {
+    }
+
+    /**
+     * Sorted rows of one shard, read by a virtual thread into a bounded buffer ahead of the merge.
+     */
+    private final class ShardCursor implements AutoCloseable {
+
+        private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(MERGE_BUFFER_SIZE);
+        private final Future<?> producer;
+        private Student head;
+
+        private ShardCursor(final SessionFactory shard, final String hql, final Integer afterId, final int maxResults) {
+            this.producer = executor.submit(() -> produce(shard, hql, afterId, maxResults));
+        }
+
+        private void produce(final SessionFactory shard, final String hql, final Integer afterId, final int maxResults) {
+            try (Session session = ReadOnlySessions.open(shard)) {
+                final SelectionQuery<Student> query = session.createSelectionQuery(hql, Student.class);
+                if (afterId != null) {
+                    query.setParameter("afterId", afterId);
+                }
+                if (maxResults > 0) {
+                    query.setMaxResults(maxResults);
+                }
+                StreamingReader.forEach(session, query, StreamingReader.Options.defaults(), this::put);
+                put(END);
+            } catch (CancellationException e) {
+                // the merge is done with this shard
+            } catch (RuntimeException e) {
+                buffer.clear();
+                put(new Failure(e));
+            }
+        }
+
+        private void put(final Object row) {
+            try {
+                buffer.put(row);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("shard read cancelled");
+            }
+        }
+
+        /**
+         * Moves to the next row of the shard.
+         *
+         * @return whether there was a next row
+         */
+        boolean advance() {
+            final Object next;
+            try {
+                next = buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while merging shard results", e);
+            }
+            if (next == END) {
+                head = null;
+                return false;
+            }
+            if (next instanceof Failure failure) {
+                throw failure.cause();
+            }
+            head = (Student) next;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            producer.cancel(true);
+        }
+
+    }
+
+}
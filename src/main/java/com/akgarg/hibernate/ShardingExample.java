@@ -0,0 +1,73 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudents;
+
+/**
+ * Spreads students over several in-memory H2 databases with a {@link ShardedStudentStore} and runs single-shard
+ * operations, ordered pages and a streaming read of all shards against them.
+ * <p>
+ * Usage: {@code ShardingExample [shards] [students]}
+ */
+public class ShardingExample {
+
+    private static final Logger LOGGER = LogManager.getLogger(ShardingExample.class);
+    private static final int PAGE_SIZE = 5;
+
+    public static void main(String[] args) {
+        final int shardCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int totalNumberOfStudents = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        try (ShardedStudentStore store = ShardedStudentStore.embedded("sharding_example", shardCount)) {
+            final long startNanos = System.nanoTime();
+            final List<Student> students = new ArrayList<>(totalNumberOfStudents);
+            for (Iterator<Student> iterator = syntheticStudents(totalNumberOfStudents); iterator.hasNext(); ) {
+                students.add(iterator.next());
+            }
+            store.persistAll(students);
+            LOGGER.info("inserted {} students into {} shards in {} ms", store.count(), store.shardCount(), (System.nanoTime() - startNanos) / 1_000_000);
+
+            final int[] studentsPerShard = new int[store.shardCount()];
+            students.forEach(student -> studentsPerShard[store.shardOf(student.getId())]++);
+            for (int shard = 0; shard < studentsPerShard.length; shard++) {
+                LOGGER.info("shard {}: {} students", shard, studentsPerShard[shard]);
+            }
+
+            final Student single = store.persist(HibernateUtils.syntheticStudent(totalNumberOfStudents));
+            LOGGER.info("persisted {} on shard {}", single, store.shardOf(single.getId()));
+            store.updateTeam(single.getId(), "Team sharded");
+            LOGGER.info("after update: {}", store.get(single.getId()).orElseThrow());
+            LOGGER.info("deleted: {}, found after delete: {}", store.delete(single.getId()), store.get(single.getId()).isPresent());
+
+            // the orderByIdDesc query of the single database examples, as a scatter-gather merge
+            store.findAll(ShardedStudentStore.Order.ID_DESC, 0, PAGE_SIZE).forEach(student -> LOGGER.info("highest ids: {}", student));
+            store.findAll(ShardedStudentStore.Order.ID_ASC, 1_000, PAGE_SIZE).forEach(student -> LOGGER.info("offset 1000: {}", student));
+
+            Integer afterId = null;
+            for (int page = 1; page <= 3; page++) {
+                final List<Student> keysetPage = store.findAfter(ShardedStudentStore.Order.ID_ASC, afterId, PAGE_SIZE);
+                final int pageNumber = page;
+                keysetPage.forEach(student -> LOGGER.info("keyset page {}: {}", pageNumber, student));
+                afterId = keysetPage.getLast().getId();
+            }
+
+            final long streamStartNanos = System.nanoTime();
+            final int[] previousId = {0};
+            final long streamed = store.forEach(ShardedStudentStore.Order.ID_ASC, student -> {
+                if (student.getId() <= previousId[0]) {
+                    throw new IllegalStateException("merge out of order at " + student.getId());
+                }
+                previousId[0] = student.getId();
+            });
+            LOGGER.info("streamed {} students in id order from all shards in {} ms", streamed, (System.nanoTime() - streamStartNanos) / 1_000_000);
+        }
+    }
+
+}
@@ -0,0 +1,326 @@
+package com.akgarg.hibernate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionEventListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.JdbcSettings;
+import org.hibernate.cfg.SessionEventSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Per statement SQL instrumentation, a cheaper and analysable replacement for {@code hibernate.show_sql}.
+ * <p>
+ * Enabled with {@value #ENABLED}{@code =true} in the settings passed to {@link HConf#getSessionFactory(Map)}, which
+ * registers this class as the statement inspector and {@link SessionListener} as the per session event listener. When
+ * it is not enabled nothing is registered, so the disabled instrumentation costs nothing.
+ * <p>
+ * The inspector sees the SQL of every statement right before it is prepared, the session listener times the JDBC
+ * execution that follows on the same thread. Statements are normalized (literals and IN lists replaced by {@code ?})
+ * and get a count and a latency histogram each. Executions slower than {@value #SLOW_QUERY_THRESHOLD_MILLIS} are
+ * logged, and a select executed {@value #REPEATED_STATEMENT_THRESHOLD} times or more within one session is reported
+ * as a probable N+1 select.
+ */
+public final class SqlInstrumentation implements StatementInspector {
+
+    /**
+     * enables the instrumentation, {@code false} by default
+     */
+    public static final String ENABLED = "sql.instrumentation.enabled";
+
+    /**
+     * executions taking at least this many milliseconds are logged, 100 by default
+     */
+    public static final String SLOW_QUERY_THRESHOLD_MILLIS = "sql.instrumentation.slow_query_threshold_ms";
+
+    /**
+     * number of executions of the same select within one session from which it is reported as N+1, 10 by default
+     */
+    public static final String REPEATED_STATEMENT_THRESHOLD = "sql.instrumentation.repeated_statement_threshold";
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = LogManager.getLogger(SqlInstrumentation.class);
+    private static final int MAX_STATEMENTS = 1_000;
+    private static final String OTHER_STATEMENTS = "<other statements>";
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * the SQL inspected last on the current thread, together with the instrumentation which inspected it
+     */
+    private static final ThreadLocal<Inspection> LAST_INSPECTION = new ThreadLocal<>();
+
+    private final Duration slowQueryThreshold;
+    private final int repeatedStatementThreshold;
+    private final transient Cache<String, String> normalizedStatements = Caffeine.newBuilder().maximumSize(MAX_STATEMENTS).build();
+    private final transient Map<String, StatementCounters> counters = new ConcurrentHashMap<>();
+    private final LongAdder slowExecutions = new LongAdder();
+    private final LongAdder repeatedStatements = new LongAdder();
+
+    private SqlInstrumentation(final Duration slowQueryThreshold, final int repeatedStatementThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.repeatedStatementThreshold = repeatedStatementThreshold;
+    }
+
+    /**
+     * Instrumentation configured by the given hibernate settings.
+     */
+    static SqlInstrumentation create(final Map<String, Object> settings) {
+        final long slowQueryThresholdMillis = Long.parseLong(String.valueOf(settings.getOrDefault(SLOW_QUERY_THRESHOLD_MILLIS, 100)));
+        final int repeatedStatementThreshold = Integer.parseInt(String.valueOf(settings.getOrDefault(REPEATED_STATEMENT_THRESHOLD, 10)));
+        if (slowQueryThresholdMillis < 0 || repeatedStatementThreshold < 2) {
+            throw new IllegalArgumentException("invalid sql instrumentation thresholds: slowQueryThresholdMillis="
+                    + slowQueryThresholdMillis + ", repeatedStatementThreshold=" + repeatedStatementThreshold);
+        }
+        return new SqlInstrumentation(Duration.ofMillis(slowQueryThresholdMillis), repeatedStatementThreshold);
+    }
+
+    static boolean isEnabled(final Map<String, Object> settings) {
+        return Boolean.parseBoolean(String.valueOf(settings.get(ENABLED)));
+    }
+
+    /**
+     * Instrumentation of the given session factory.
+     *
+     * @throws IllegalStateException if the session factory was built without {@value #ENABLED}{@code =true}
+     */
+    static SqlInstrumentation of(final SessionFactory sessionFactory) {
+        final StatementInspector statementInspector = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getSessionFactoryOptions()
+                .getStatementInspector();
+        if (statementInspector instanceof SqlInstrumentation instrumentation) {
+            return instrumentation;
+        }
+        throw new IllegalStateException("sql instrumentation is not enabled, set " + ENABLED + "=true");
+    }
+
+    /**
+     * Settings registering this instrumentation with hibernate.
+     */
+    Map<String, Object> hibernateSettings() {
+        return Map.of(
+                JdbcSettings.STATEMENT_INSPECTOR, this,
+                SessionEventSettings.AUTO_SESSION_EVENTS_LISTENER, SessionListener.class.getName()
+        );
+    }
+
+    @Override
+    public String inspect(final String sql) {
+        LAST_INSPECTION.set(new Inspection(this, sql));
+        return sql;
+    }
+
+    /**
+     * Statement text with literals and IN lists replaced by {@code ?} and whitespace collapsed, so that executions
+     * differing only in their values are counted together.
+     */
+    static String normalize(final String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMERIC_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("in (?...)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private String normalizedStatement(final String sql) {
+        return normalizedStatements.get(sql, SqlInstrumentation::normalize);
+    }
+
+    private StatementCounters counters(final String statement) {
+        final StatementCounters statementCounters = counters.get(statement);
+        if (statementCounters != null) {
+            return statementCounters;
+        }
+        // keeps the number of tracked statements bounded if the normalization misses a kind of literal
+        return counters.computeIfAbsent(counters.size() < MAX_STATEMENTS ? statement : OTHER_STATEMENTS, key -> new StatementCounters());
+    }
+
+    private void recordExecution(final String sql, final String statement, final long elapsedNanos) {
+        final StatementCounters statementCounters = counters(statement);
+        statementCounters.latency.record(elapsedNanos);
+        if (elapsedNanos >= slowQueryThreshold.toNanos()) {
+            statementCounters.slowExecutions.increment();
+            slowExecutions.increment();
+            LOGGER.warn("slow statement ({} ms): {}", String.format("%.3f", elapsedNanos / 1_000_000.0), sql);
+        }
+    }
+
+    private void recordRepeated(final String statement) {
+        counters(statement).repeatedInSessions.increment();
+        repeatedStatements.increment();
+        LOGGER.warn("probable N+1 select, executed {} times in one session: {}", repeatedStatementThreshold, statement);
+    }
+
+    /**
+     * Statement counters collected so far, together with the relevant hibernate statistics (which are only collected
+     * with {@code hibernate.generate_statistics=true}).
+     */
+    static Snapshot snapshot(final SessionFactory sessionFactory) {
+        final SqlInstrumentation instrumentation = of(sessionFactory);
+        final List<StatementSnapshot> statements = instrumentation.counters.entrySet().stream()
+                .map(entry -> new StatementSnapshot(
+                        entry.getKey(),
+                        entry.getValue().latency.snapshot(),
+                        entry.getValue().slowExecutions.sum(),
+                        entry.getValue().repeatedInSessions.sum()))
+                .sorted(Comparator.comparingLong(StatementSnapshot::totalNanos).reversed())
+                .toList();
+
+        final Statistics statistics = sessionFactory.getStatistics();
+        return new Snapshot(
+                statements,
+                instrumentation.slowExecutions.sum(),
+                instrumentation.repeatedStatements.sum(),
+                statistics.getPrepareStatementCount(),
+                statistics.getEntityFetchCount(),
+                statistics.getCollectionFetchCount(),
+                statistics.getQueryExecutionMaxTimeQueryString()
+        );
+    }
+
+    /**
+     * Clears all counters, e.g. to leave out a warm-up phase.
+     */
+    void reset() {
+        counters.clear();
+        slowExecutions.reset();
+        repeatedStatements.reset();
+    }
+
+    private record Inspection(SqlInstrumentation instrumentation, String sql) {
+    }
+
+    private static final class StatementCounters {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder slowExecutions = new LongAdder();
+        private final LongAdder repeatedInSessions = new LongAdder();
+    }
+
+    /**
+     * Times the JDBC executions of one session and counts its selects, instantiated by hibernate for every session.
+     * Sessions are used by one thread at a time, so the statement inspected last on the thread is the one executed,
+     * except for JDBC batches: other statements (e.g. sequence calls) run while a batch is filled, a batch is
+     * attributed to the last insert, update or delete prepared in the session instead.
+     */
+    public static final class SessionListener implements SessionEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient Map<String, Integer> selectExecutions;
+        private transient Inspection lastPreparedMutation;
+        private transient Inspection executing;
+        private transient long executionStartNanos;
+
+        @Override
+        public void jdbcPrepareStatementEnd() {
+            final Inspection inspection = LAST_INSPECTION.get();
+            if (inspection != null && !isSelect(inspection.sql())) {
+                lastPreparedMutation = inspection;
+            }
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            executionStart(LAST_INSPECTION.get());
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            executionEnd();
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            executionStart(lastPreparedMutation);
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            executionEnd();
+        }
+
+        private void executionStart(final Inspection inspection) {
+            executing = inspection;
+            executionStartNanos = System.nanoTime();
+        }
+
+        private void executionEnd() {
+            final long elapsedNanos = System.nanoTime() - executionStartNanos;
+            final Inspection inspection = executing;
+            executing = null;
+            if (inspection == null) {
+                return;
+            }
+
+            final SqlInstrumentation instrumentation = inspection.instrumentation();
+            final String statement = instrumentation.normalizedStatement(inspection.sql());
+            instrumentation.recordExecution(inspection.sql(), statement, elapsedNanos);
+
+            // selects without a from clause (sequence calls) are expected to repeat
+            if (isSelect(statement) && statement.contains(" from ")) {
+                if (selectExecutions == null) {
+                    selectExecutions = new HashMap<>();
+                }
+                final int executions = selectExecutions.merge(statement, 1, Integer::sum);
+                if (executions == instrumentation.repeatedStatementThreshold) {
+                    instrumentation.recordRepeated(statement);
+                }
+            }
+        }
+
+        private static boolean isSelect(final String sql) {
+            return sql.regionMatches(true, 0, "select", 0, 6) || sql.regionMatches(true, 0, "with", 0, 4);
+        }
+
+    }
+
+    /**
+     * @param statement          normalized statement
+     * @param latency            JDBC execution latency, without reading the result set
+     * @param slowExecutions     executions at or above the slow query threshold
+     * @param repeatedInSessions sessions which executed the statement at least the repeated statement threshold times
+     */
+    public record StatementSnapshot(String statement,
+                                    LatencyHistogram.Snapshot latency,
+                                    long slowExecutions,
+                                    long repeatedInSessions) {
+
+        public long totalNanos() {
+            return latency.meanNanos() * latency.count();
+        }
+
+    }
+
+    /**
+     * @param statements         per statement counters, highest total execution time first
+     * @param slowExecutions     executions at or above the slow query threshold
+     * @param repeatedStatements probable N+1 selects detected, one per session and statement
+     * @param preparedStatements statements prepared, from hibernate statistics
+     * @param entityFetches      entities fetched lazily or by id, from hibernate statistics
+     * @param collectionFetches  collections fetched lazily, from hibernate statistics
+     * @param slowestQuery       slowest HQL/criteria query, from hibernate statistics
+     */
+    public record Snapshot(List<StatementSnapshot> statements,
+                           long slowExecutions,
+                           long repeatedStatements,
+                           long preparedStatements,
+                           long entityFetches,
+                           long collectionFetches,
+                           String slowestQuery) {
+    }
+
+}
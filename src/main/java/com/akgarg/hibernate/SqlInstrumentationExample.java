@@ -0,0 +1,71 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.CacheSettings;
+import org.hibernate.cfg.StatisticsSettings;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudents;
+
+/**
+ * Runs an N+1 select and a slow query against an in-memory H2 database with {@link SqlInstrumentation} enabled and
+ * logs what it collected.
+ */
+public class SqlInstrumentationExample {
+
+    private static final Logger LOGGER = LogManager.getLogger(SqlInstrumentationExample.class);
+    private static final int TOTAL_NUMBER_OF_STUDENTS = 200_000;
+
+    public static void main(String[] args) {
+        final Map<String, Object> settings = embeddedDatabaseSettings("sql_instrumentation_example");
+        settings.put(SqlInstrumentation.ENABLED, true);
+        settings.put(SqlInstrumentation.SLOW_QUERY_THRESHOLD_MILLIS, 50);
+        settings.put(SqlInstrumentation.REPEATED_STATEMENT_THRESHOLD, 10);
+        settings.put(StatisticsSettings.GENERATE_STATISTICS, true);
+        // without the second level cache every session.get below is a select
+        settings.put(CacheSettings.USE_SECOND_LEVEL_CACHE, false);
+
+        try (SessionFactory sessionFactory = getSessionFactory(settings)) {
+            BulkInserter.insert(sessionFactory, syntheticStudents(TOTAL_NUMBER_OF_STUDENTS),
+                    BulkInserter.Options.defaults().withChunkSize(10_000).withMode(BulkInserter.Mode.STATELESS));
+
+            loadOneByOne(sessionFactory.openSession());
+            countByNamePattern(sessionFactory.openSession());
+
+            final SqlInstrumentation.Snapshot snapshot = SqlInstrumentation.snapshot(sessionFactory);
+            LOGGER.info("slow executions: {}, probable N+1 selects: {}, prepared statements: {}, entity fetches: {}",
+                    snapshot.slowExecutions(), snapshot.repeatedStatements(), snapshot.preparedStatements(), snapshot.entityFetches());
+            LOGGER.info("slowest query: {}", snapshot.slowestQuery());
+            snapshot.statements().forEach(statement -> LOGGER.info("{} -> {}, slow={}, N+1 sessions={}",
+                    statement.statement(), statement.latency(), statement.slowExecutions(), statement.repeatedInSessions()));
+        }
+    }
+
+    /**
+     * The N+1 pattern: ids first, then one select per student instead of a single query for all of them.
+     */
+    private static void loadOneByOne(final Session session) {
+        final List<Integer> ids = session.createSelectionQuery("SELECT s.id FROM Student s WHERE s.id <= 20", Integer.class).list();
+        for (final Integer id : ids) {
+            session.get(Student.class, id);
+        }
+        session.close();
+    }
+
+    private static void countByNamePattern(final Session session) {
+        final Long count = session.createSelectionQuery("SELECT count(s) FROM Student s WHERE lower(s.name) LIKE :pattern", Long.class)
+                .setParameter("pattern", "%99%")
+                .getSingleResult();
+        LOGGER.info("{} students with 99 in their name", count);
+        session.close();
+    }
+
+}
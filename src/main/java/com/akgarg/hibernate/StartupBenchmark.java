@@ -0,0 +1,162 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.JdbcSettings;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudents;
+
+/**
+ * Startup time of a session factory, phase by phase, with {@link HConf} and with each {@link FastBootstrap.SchemaAction}.
+ * <p>
+ * Every scenario runs in its own JVM so that it pays the class loading and JIT warm-up a short-lived worker pays,
+ * against a file based H2 database which outlives the processes. The "rebuild" scenario builds a second session
+ * factory in the same JVM, reusing the service registry of the first one.
+ * <p>
+ * Usage: {@code StartupBenchmark [tableSize]}
+ */
+public class StartupBenchmark {
+
+    private static final Logger LOGGER = LogManager.getLogger(StartupBenchmark.class);
+    private static final String SCENARIO_ARGUMENT = "--scenario";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 1 && SCENARIO_ARGUMENT.equals(args[0])) {
+            runScenario(args[1]);
+            return;
+        }
+        final int tableSize = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        try (SessionFactory sessionFactory = FastBootstrap.build(settings(), FastBootstrap.SchemaAction.CREATE)) {
+            BulkInserter.insert(sessionFactory, syntheticStudents(tableSize),
+                    BulkInserter.Options.defaults().withChunkSize(10_000).withMode(BulkInserter.Mode.STATELESS));
+        } finally {
+            FastBootstrap.release();
+        }
+
+        // the scenarios recreating the schema run last, they drop the inserted students
+        for (final String scenario : List.of("VALIDATE", "VALIDATE_DEFERRED", "NONE", "lazy", "rebuild", "CREATE", "hconf")) {
+            runInNewJvm(scenario);
+        }
+    }
+
+    private static void runInNewJvm(final String scenario) throws IOException, InterruptedException {
+        final Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        final Process process = new ProcessBuilder(java.toString(),
+                "-cp", System.getProperty("java.class.path"),
+                StartupBenchmark.class.getName(), SCENARIO_ARGUMENT, scenario)
+                .inheritIO()
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("scenario " + scenario + " failed with exit code " + process.exitValue());
+        }
+    }
+
+    private static void runScenario(final String scenario) {
+        final long startNanos = System.nanoTime();
+        switch (scenario) {
+            case "hconf" -> {
+                final Phases phases = new Phases(startNanos);
+                try (SessionFactory sessionFactory = getSessionFactory(settings())) {
+                    phases.end("session factory");
+                    firstQuery(sessionFactory);
+                    phases.end("first query");
+                }
+                phases.log("hconf (create)");
+            }
+            case "lazy" -> {
+                final Phases phases = new Phases(startNanos);
+                try (FastBootstrap.LazySessionFactory lazy = FastBootstrap.lazy(settings(), FastBootstrap.SchemaAction.NONE)) {
+                    phases.end("lazy holder");
+                    firstQuery(lazy.get());
+                    phases.end("first query (builds the factory)");
+                }
+                phases.log("lazy (none)");
+            }
+            case "rebuild" -> {
+                FastBootstrap.build(settings(), FastBootstrap.SchemaAction.NONE).close();
+                final Phases phases = new Phases(System.nanoTime());
+                try (SessionFactory sessionFactory = FastBootstrap.build(settings(), FastBootstrap.SchemaAction.NONE)) {
+                    phases.end("session factory (cached service registry)");
+                    firstQuery(sessionFactory);
+                    phases.end("first query");
+                }
+                phases.log("rebuild in the same JVM (none)");
+            }
+            default -> {
+                final FastBootstrap.SchemaAction schemaAction = FastBootstrap.SchemaAction.valueOf(scenario);
+                final Phases phases = new Phases(startNanos);
+                final Map<String, Object> settings = FastBootstrap.settings(settings(), schemaAction);
+                final StandardServiceRegistry serviceRegistry = FastBootstrap.serviceRegistry(settings);
+                phases.end("service registry");
+                final Metadata metadata = FastBootstrap.metadata(serviceRegistry);
+                phases.end("metadata");
+                try (SessionFactory sessionFactory = FastBootstrap.sessionFactory(metadata, schemaAction)) {
+                    phases.end("session factory");
+                    firstQuery(sessionFactory);
+                    phases.end("first query");
+                } finally {
+                    StandardServiceRegistryBuilder.destroy(serviceRegistry);
+                }
+                phases.log(schemaAction.name().toLowerCase());
+            }
+        }
+        FastBootstrap.release();
+    }
+
+    private static Map<String, Object> settings() {
+        final Map<String, Object> settings = embeddedDatabaseSettings("startup_benchmark");
+        settings.put(JdbcSettings.JAKARTA_JDBC_URL, "jdbc:h2:file:./target/startup_benchmark");
+        return settings;
+    }
+
+    private static void firstQuery(final SessionFactory sessionFactory) {
+        try (Session session = sessionFactory.openSession()) {
+            final List<Student> students = StudentQueries.select(session, StudentQueries.FIND_ALL)
+                    .setMaxResults(10)
+                    .list();
+            LOGGER.debug("first query returned {} students", students.size());
+        }
+    }
+
+    /**
+     * Milliseconds spent in each phase, measured from the end of the previous one.
+     */
+    private static final class Phases {
+
+        private final List<String> timings = new ArrayList<>();
+        private final long startNanos;
+        private long lastNanos;
+
+        private Phases(final long startNanos) {
+            this.startNanos = startNanos;
+            this.lastNanos = startNanos;
+        }
+
+        private void end(final String phase) {
+            final long nowNanos = System.nanoTime();
+            timings.add(phase + " " + (nowNanos - lastNanos) / 1_000_000 + " ms");
+            lastNanos = nowNanos;
+        }
+
+        private void log(final String scenario) {
+            LOGGER.info("{}: {}, total {} ms", scenario, String.join(", ", timings), (lastNanos - startNanos) / 1_000_000);
+        }
+
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.JdbcSettings;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudents;
+
+/**
+ * Iterates a large student table with {@link StreamingReader} and fails if the retained heap grows with the number of
+ * rows read, then shows what {@code list()} retains for a fraction of the same table.
+ * <p>
+ * The retained heap is measured (after a GC) at 10%, 50% and 100% of the rows; the table itself lives in the same
+ * JVM (in-memory H2), it is part of the baseline and not of the growth.
+ * <p>
+ * Usage: {@code StreamingReadBenchmark [rows] [maxRetainedGrowthMb] [listRows]}, e.g. with {@code -Xmx1g}
+ */
+public class StreamingReadBenchmark {
+
+    private static final Logger LOGGER = LogManager.getLogger(StreamingReadBenchmark.class);
+
+    public static void main(String[] args) {
+        final long rows = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        final long maxRetainedGrowthBytes = (args.length > 1 ? Long.parseLong(args[1]) : 32) * 1024 * 1024;
+        final int listRows = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+
+        final Map<String, Object> settings = embeddedDatabaseSettings("streaming_read");
+        // without lazy execution H2 itself buffers the complete result set before returning the first row
+        settings.put(JdbcSettings.JAKARTA_JDBC_URL, settings.get(JdbcSettings.JAKARTA_JDBC_URL) + ";LAZY_QUERY_EXECUTION=TRUE");
+
+        try (SessionFactory sessionFactory = getSessionFactory(settings)) {
+            final BulkInserter.Result insertResult = BulkInserter.insert(sessionFactory, syntheticStudents(rows),
+                    BulkInserter.Options.defaults().withChunkSize(10_000).withMode(BulkInserter.Mode.STATELESS));
+            LOGGER.info("inserted {} rows in {} ms", insertResult.rows(), insertResult.elapsed().toMillis());
+
+            streamAll(sessionFactory, rows, maxRetainedGrowthBytes);
+            listPrefix(sessionFactory, listRows);
+        }
+    }
+
+    private static void streamAll(final SessionFactory sessionFactory, final long rows, final long maxRetainedGrowthBytes) {
+        final long[] checkpoints = {rows / 10, rows / 2, rows};
+        final long[] retainedAtCheckpoint = new long[checkpoints.length];
+        final long[] seen = {0};
+        final long startNanos = System.nanoTime();
+
+        final long readRows;
+        try (Session session = sessionFactory.openSession()) {
+            readRows = StreamingReader.forEach(
+                    session,
+                    session.createQuery("FROM Student", Student.class),
+                    StreamingReader.Options.defaults(),
+                    student -> {
+                        seen[0]++;
+                        for (int i = 0; i < checkpoints.length; i++) {
+                            if (seen[0] == checkpoints[i]) {
+                                retainedAtCheckpoint[i] = HeapSampler.settledUsedHeap();
+                            }
+                        }
+                    }
+            );
+        }
+
+        final long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        final long growth = retainedAtCheckpoint[2] - retainedAtCheckpoint[0];
+        LOGGER.info("streamed {} rows in {} ms, retained heap at 10%/50%/100%: {} / {} / {}",
+                readRows, elapsedMillis,
+                HeapSampler.toMegabytes(retainedAtCheckpoint[0]),
+                HeapSampler.toMegabytes(retainedAtCheckpoint[1]),
+                HeapSampler.toMegabytes(retainedAtCheckpoint[2]));
+
+        if (readRows != rows) {
+            throw new IllegalStateException("expected " + rows + " rows but streamed " + readRows);
+        }
+        if (growth > maxRetainedGrowthBytes) {
+            throw new IllegalStateException("retained heap grew by " + HeapSampler.toMegabytes(growth)
+                    + " while streaming, allowed are " + HeapSampler.toMegabytes(maxRetainedGrowthBytes));
+        }
+        LOGGER.info("retained heap growth while streaming: {} (bound {})",
+                HeapSampler.toMegabytes(growth), HeapSampler.toMegabytes(maxRetainedGrowthBytes));
+    }
+
+    private static void listPrefix(final SessionFactory sessionFactory, final int listRows) {
+        final long baseline = HeapSampler.settledUsedHeap();
+        try (Session session = sessionFactory.openSession()) {
+            final List<Student> students = session.createQuery("FROM Student", Student.class)
+                    .setMaxResults(listRows)
+                    .list();
+            final long retained = HeapSampler.settledUsedHeap() - baseline;
+            LOGGER.info("list() of {} rows retains {} until the session is closed", students.size(), HeapSampler.toMegabytes(retained));
+        }
+    }
+
+}
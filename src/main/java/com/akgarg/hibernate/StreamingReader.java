@@ -0,0 +1,111 @@
+package com.akgarg.hibernate;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.SelectionQuery;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Constant memory full-table reads.
+ * <p>
+ * {@code query.list()} materializes every row in a {@code List} and in the persistence context at once. The reader
+ * instead walks a forward-only cursor: rows are fetched from the database {@link Options#fetchSize()} at a time,
+ * entities are loaded read-only (no dirty checking snapshots), the second level cache is bypassed, and the session is
+ * cleared every {@link Options#clearEvery()} rows, detaching the entities which were already handed out.
+ * <p>
+ * MySQL ignores the fetch size unless {@code useCursorFetch=true} is set on the JDBC url (which {@link HConf} does),
+ * without it the driver reads the whole result set into memory.
+ */
+public final class StreamingReader {
+
+    private StreamingReader() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Passes every result of the query to the given action.
+     *
+     * @return number of processed rows
+     */
+    static <T> long forEach(final Session session,
+                            final SelectionQuery<T> query,
+                            final Options options,
+                            final Consumer<? super T> action) {
+        prepare(query, options);
+
+        long rows = 0;
+        try (ScrollableResults<T> results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                action.accept(results.get());
+                if (++rows % options.clearEvery() == 0) {
+                    session.clear();
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Results of the query as a lazily fetched stream, which has to be closed to release the underlying cursor.
+     * <p>
+     * The session is cleared before a row is fetched, once the previous one has gone through the whole pipeline, so
+     * the entity handed to the stages is always attached. Stages buffering rows ({@code sorted}, {@code collect} into
+     * a list) keep detached entities, whose lazy associations can no longer be loaded.
+     */
+    static <T> Stream<T> stream(final Session session, final SelectionQuery<T> query, final Options options) {
+        prepare(query, options);
+
+        final ScrollableResults<T> results = query.scroll(ScrollMode.FORWARD_ONLY);
+        final Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+
+            private long fetchedRows;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super T> action) {
+                if (fetchedRows > 0 && fetchedRows % options.clearEvery() == 0) {
+                    session.clear();
+                }
+                if (!results.next()) {
+                    return false;
+                }
+                fetchedRows++;
+                action.accept(results.get());
+                return true;
+            }
+
+        };
+        return StreamSupport.stream(rows, false).onClose(results::close);
+    }
+
+    private static void prepare(final SelectionQuery<?> query, final Options options) {
+        query.setFetchSize(options.fetchSize());
+        query.setReadOnly(true);
+        query.setCacheMode(CacheMode.IGNORE);
+    }
+
+    /**
+     * @param fetchSize  number of rows fetched from the database per round-trip
+     * @param clearEvery number of rows after which the session is cleared
+     */
+    public record Options(int fetchSize, int clearEvery) {
+
+        public Options {
+            if (fetchSize < 1 || clearEvery < 1) {
+                throw new IllegalArgumentException("fetchSize and clearEvery must be positive");
+            }
+        }
+
+        public static Options defaults() {
+            return new Options(1_000, 1_000);
+        }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.SelectionQuery;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaRoot;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * HQL, criteria and native {@link Student} queries returning records instead of entities.
+ * <p>
+ * The record components name the selected {@link Student} attributes (the columns of the same name for native
+ * queries), e.g. {@link StudentView} selects {@code id} and {@code name}. Every row is passed to the canonical
+ * constructor of the record: nothing is registered in the persistence context, there is no snapshot to keep, no
+ * entity entry, no proxy and nothing to dirty check at flush, and only the selected columns are read. The records
+ * are not managed, changing them changes nothing in the database.
+ * <p>
+ * Plain DTO classes work the same way with an explicit {@code SELECT new} in HQL or
+ * {@link HibernateCriteriaBuilder#construct(Class, jakarta.persistence.criteria.Selection[])} in criteria queries.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public final class StudentProjections {
+
+    private static final Map<Class<?>, Projection> PROJECTIONS = new ConcurrentHashMap<>();
+
+    private StudentProjections() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * HQL selection query, {@code SELECT new R(s.a, s.b, ...) FROM Student s} followed by the given clauses.
+     *
+     * @param clauses where, group by or order by clauses referring to the student as {@code s}, may be empty
+     */
+    static <R extends Record> SelectionQuery<R> hql(final Session session, final Class<R> type, final String clauses) {
+        final Projection projection = projection(type);
+        final String selection = projection.attributes().stream().map(attribute -> "s." + attribute).collect(Collectors.joining(", "));
+        return session.createSelectionQuery("SELECT new " + type.getName() + "(" + selection + ") FROM Student s " + clauses, type);
+    }
+
+    /**
+     * Criteria selection query, the given restriction adds where and order by clauses to it.
+     */
+    static <R extends Record> SelectionQuery<R> criteria(final Session session, final Class<R> type, final Restriction restriction) {
+        final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+        final JpaCriteriaQuery<R> criteriaQuery = criteriaBuilder.createQuery(type);
+        final JpaRoot<Student> root = criteriaQuery.from(Student.class);
+        criteriaQuery.select(criteriaBuilder.construct(type, projection(type).attributes().stream()
+                .map(root::get)
+                .toList()));
+        restriction.apply(criteriaBuilder, criteriaQuery, root);
+        return session.createQuery(criteriaQuery);
+    }
+
+    /**
+     * Native query selecting a column per record component, under the name of the component.
+     */
+    static <R extends Record> NativeQuery<R> nativeQuery(final Session session, final Class<R> type, final String sql) {
+        final Projection projection = projection(type);
+        final NativeQuery<R> query = session.createNativeQuery(sql, type);
+        for (int i = 0; i < projection.attributes().size(); i++) {
+            query.addScalar(projection.attributes().get(i), projection.types().get(i));
+        }
+        return query.setTupleTransformer((tuple, aliases) -> type.cast(projection.instantiate(tuple)));
+    }
+
+    private static Projection projection(final Class<? extends Record> type) {
+        return PROJECTIONS.computeIfAbsent(type, key -> {
+            final RecordComponent[] components = key.getRecordComponents();
+            final List<Class<?>> types = Arrays.stream(components).<Class<?>>map(RecordComponent::getType).toList();
+            try {
+                final MethodHandle constructor = MethodHandles.lookup()
+                        .findConstructor(key, MethodType.methodType(void.class, types))
+                        .asSpreader(Object[].class, types.size());
+                return new Projection(Arrays.stream(components).map(RecordComponent::getName).toList(), types, constructor);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("no accessible canonical constructor in " + key.getName(), e);
+            }
+        });
+    }
+
+    /**
+     * Adds where and order by clauses to a criteria projection.
+     */
+    @FunctionalInterface
+    public interface Restriction {
+
+        Restriction NONE = (criteriaBuilder, criteriaQuery, root) -> {
+        };
+
+        void apply(HibernateCriteriaBuilder criteriaBuilder, JpaCriteriaQuery<?> criteriaQuery, JpaRoot<Student> root);
+
+    }
+
+    /**
+     * @param attributes  names of the record components, in declaration order
+     * @param types       types of the record components
+     * @param constructor canonical constructor taking the components as an array
+     */
+    private record Projection(List<String> attributes, List<Class<?>> types, MethodHandle constructor) {
+
+        Object instantiate(final Object[] tuple) {
+            try {
+                return constructor.invoke(tuple);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.ParameterExpression;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.MutationQuery;
+import org.hibernate.query.SelectionQuery;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaDelete;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaCriteriaUpdate;
+import org.hibernate.query.criteria.JpaRoot;
+
+/**
+ * Registry of the named, precompiled {@link Student} criteria queries used by {@link CriteriaExample}.
+ * <p>
+ * The criteria trees are built and validated once, when the session factory starts ({@link HConf} calls
+ * {@link #register(SessionFactory)}), and stored as named queries. Executing one in the caller's session only copies
+ * the stored tree and binds the parameters, instead of building the tree again and opening a second
+ * {@code EntityManager} on every call. The SQL translation is kept in hibernate's query plan cache (its size is set
+ * with {@code hibernate.query.plan_cache_max_size}), criteria queries are only put there when they are marked with
+ * {@link HibernateHints#HINT_QUERY_PLAN_CACHEABLE}.
+ */
+public final class StudentQueries {
+
+    /**
+     * all students
+     */
+    public static final String FIND_ALL = "Student.findAll";
+
+    /**
+     * students with an id greater than the {@code id} parameter
+     */
+    public static final String FIND_BY_ID_GREATER_THAN = "Student.findByIdGreaterThan";
+
+    /**
+     * all students, highest id first
+     */
+    public static final String ORDER_BY_ID_DESC = "Student.orderByIdDesc";
+
+    /**
+     * sets the name of the student with the given {@code id} to the {@code name} parameter
+     */
+    public static final String UPDATE_NAME_BY_ID = "Student.updateNameById";
+
+    /**
+     * deletes the student with the given {@code id}
+     */
+    public static final String DELETE_BY_ID = "Student.deleteById";
+
+    private StudentQueries() {
+        throw new IllegalStateException();
+    }
+
+    static void register(final SessionFactory sessionFactory) {
+        try (Session session = sessionFactory.openSession()) {
+            final HibernateCriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+
+            final JpaCriteriaQuery<Student> findAll = criteriaBuilder.createQuery(Student.class);
+            findAll.select(findAll.from(Student.class));
+            register(sessionFactory, FIND_ALL, session.createQuery(findAll));
+
+            final JpaCriteriaQuery<Student> findByIdGreaterThan = criteriaBuilder.createQuery(Student.class);
+            final JpaRoot<Student> findByIdGreaterThanRoot = findByIdGreaterThan.from(Student.class);
+            final ParameterExpression<Integer> minimumId = criteriaBuilder.parameter(Integer.class, "id");
+            findByIdGreaterThan.select(findByIdGreaterThanRoot)
+                    .where(criteriaBuilder.greaterThan(findByIdGreaterThanRoot.get("id"), minimumId));
+            register(sessionFactory, FIND_BY_ID_GREATER_THAN, session.createQuery(findByIdGreaterThan));
+
+            final JpaCriteriaQuery<Student> orderByIdDesc = criteriaBuilder.createQuery(Student.class);
+            final JpaRoot<Student> orderByIdDescRoot = orderByIdDesc.from(Student.class);
+            orderByIdDesc.select(orderByIdDescRoot).orderBy(criteriaBuilder.desc(orderByIdDescRoot.get("id")));
+            register(sessionFactory, ORDER_BY_ID_DESC, session.createQuery(orderByIdDesc));
+
+            // addNamedQuery takes a JPA query, which a MutationQuery is not; Session's own createQuery overloads for
+            // criteria updates and deletes are deprecated, so the mutations are created through the JPA interface
+            final EntityManager entityManager = session;
+
+            final JpaCriteriaUpdate<Student> updateNameById = criteriaBuilder.createCriteriaUpdate(Student.class);
+            final JpaRoot<Student> updateNameByIdRoot = updateNameById.from(Student.class);
+            final ParameterExpression<String> name = criteriaBuilder.parameter(String.class, "name");
+            updateNameById.set(updateNameByIdRoot.<String>get("name"), name);
+            updateNameById.where(criteriaBuilder.equal(updateNameByIdRoot.get("id"), criteriaBuilder.parameter(Integer.class, "id")));
+            register(sessionFactory, UPDATE_NAME_BY_ID, entityManager.createQuery(updateNameById));
+
+            final JpaCriteriaDelete<Student> deleteById = criteriaBuilder.createCriteriaDelete(Student.class);
+            final JpaRoot<Student> deleteByIdRoot = deleteById.from(Student.class);
+            deleteById.where(criteriaBuilder.equal(deleteByIdRoot.get("id"), criteriaBuilder.parameter(Integer.class, "id")));
+            register(sessionFactory, DELETE_BY_ID, entityManager.createQuery(deleteById));
+        }
+    }
+
+    private static void register(final SessionFactory sessionFactory, final String name, final Query query) {
+        query.setHint(HibernateHints.HINT_QUERY_PLAN_CACHEABLE, true);
+        sessionFactory.addNamedQuery(name, query);
+    }
+
+    /**
+     * Named selection query, to be executed in the given session.
+     */
+    static SelectionQuery<Student> select(final Session session, final String name) {
+        return session.createNamedSelectionQuery(name, Student.class)
+                .setHint(HibernateHints.HINT_QUERY_PLAN_CACHEABLE, true);
+    }
+
+    /**
+     * Named mutation query, to be executed in the given session.
+     */
+    static MutationQuery mutate(final Session session, final String name) {
+        return session.createNamedMutationQuery(name)
+                .setHint(HibernateHints.HINT_QUERY_PLAN_CACHEABLE, true);
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.search.backend.lucene.cfg.LuceneIndexSettings;
+import org.hibernate.search.engine.cfg.EngineSettings;
+import org.hibernate.search.engine.search.common.BooleanOperator;
+import org.hibernate.search.engine.search.predicate.SearchPredicate;
+import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.mapper.orm.cfg.HibernateOrmMapperSettings;
+import org.hibernate.search.mapper.orm.session.SearchSession;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text search over the {@link Student} name and team, a replacement for {@code LIKE '%...%'} filters.
+ * <p>
+ * A leading wildcard keeps the database from using an index, so every {@code LIKE '%John%'} scans the whole table.
+ * Here the names are tokenized into an embedded Lucene index, kept in memory or in a local directory, and a search
+ * only reads the posting lists of the searched words. Results are ranked by relevance, best match first.
+ * <p>
+ * The index is only maintained by session factories built with {@link #hibernateSettings(Storage)}. Students
+ * persisted, updated or deleted through a {@link Session} are indexed when the transaction commits. Changes made with
+ * a stateless session, with HQL/criteria mutation queries or directly in the database bypass the index, call
+ * {@link #reindex(SessionFactory)} after them.
+ */
+public final class StudentSearch {
+
+    /**
+     * directory settings apply to every index of the default backend
+     */
+    private static final String DIRECTORY_TYPE = EngineSettings.BACKEND + "." + LuceneIndexSettings.DIRECTORY_TYPE;
+    private static final String DIRECTORY_ROOT = EngineSettings.BACKEND + "." + LuceneIndexSettings.DIRECTORY_ROOT;
+
+    private StudentSearch() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Settings enabling the index, to be passed to {@link HConf#getSessionFactory(Map)}.
+     */
+    static Map<String, Object> hibernateSettings(final Storage storage) {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put(HibernateOrmMapperSettings.ENABLED, true);
+        switch (storage) {
+            case Storage.InMemory ignored -> settings.put(DIRECTORY_TYPE, "local-heap");
+            case Storage.OnDisk onDisk -> {
+                settings.put(DIRECTORY_TYPE, "local-filesystem");
+                settings.put(DIRECTORY_ROOT, onDisk.root().toString());
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Ids of the best matching students, best match first.
+     *
+     * @param text   words to search for, all of them must match; {@code john*} matches words starting with
+     *               {@code john} and {@code "john doe"} matches the phrase
+     * @param limit  maximum number of ids returned
+     * @param fields fields searched, {@link Field#NAME} when none is given
+     */
+    static List<Integer> ids(final Session session, final String text, final int limit, final Field... fields) {
+        final SearchSession searchSession = Search.session(session);
+        return searchSession.search(Student.class)
+                .select(f -> f.id(Integer.class))
+                .where(predicate(searchSession, text, fields))
+                .fetchHits(limit);
+    }
+
+    /**
+     * The best matching students, best match first. Only the matching students are loaded, by id, and they are
+     * managed by the given session like any other loaded entity.
+     *
+     * @see #ids(Session, String, int, Field...)
+     */
+    static List<Student> entities(final Session session, final String text, final int limit, final Field... fields) {
+        final SearchSession searchSession = Search.session(session);
+        return searchSession.search(Student.class)
+                .where(predicate(searchSession, text, fields))
+                .fetchHits(limit);
+    }
+
+    /**
+     * Rebuilds the index from the student table, for data written while the index was not maintained.
+     *
+     * @return number of indexed students
+     */
+    static long reindex(final SessionFactory sessionFactory) {
+        try {
+            Search.mapping(sessionFactory).scope(Student.class).massIndexer()
+                    .purgeAllOnStart(true)
+                    .typesToIndexInParallel(1)
+                    .threadsToLoadObjects(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))
+                    .batchSizeToLoadObjects(HConf.DEFAULT_BATCH_SIZE)
+                    .startAndWait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while reindexing students", e);
+        }
+        try (Session session = sessionFactory.openSession()) {
+            return Search.session(session).search(Student.class)
+                    .where(f -> f.matchAll())
+                    .fetchTotalHitCount();
+        }
+    }
+
+    private static SearchPredicate predicate(final SearchSession searchSession, final String text, final Field... fields) {
+        final String[] fieldNames = (fields.length == 0 ? List.of(Field.NAME) : Arrays.asList(fields)).stream()
+                .map(Field::fieldName)
+                .toArray(String[]::new);
+        return searchSession.scope(Student.class).predicate()
+                .simpleQueryString()
+                .fields(fieldNames)
+                .matching(text)
+                .defaultOperator(BooleanOperator.AND)
+                .toPredicate();
+    }
+
+    /**
+     * Indexed {@link Student} attributes.
+     */
+    public enum Field {
+        NAME("name"),
+        TEAM("team");
+
+        private final String fieldName;
+
+        Field(final String fieldName) {
+            this.fieldName = fieldName;
+        }
+
+        String fieldName() {
+            return fieldName;
+        }
+    }
+
+    /**
+     * Where the index is kept.
+     */
+    public sealed interface Storage {
+
+        static Storage inMemory() {
+            return new InMemory();
+        }
+
+        /**
+         * @param root directory holding the index, created if missing; the index survives restarts
+         */
+        static Storage onDisk(final Path root) {
+            return new OnDisk(root);
+        }
+
+        /**
+         * index on the heap, lost when the session factory is closed, rebuild it with {@link #reindex(SessionFactory)}
+         */
+        record InMemory() implements Storage {
+        }
+
+        record OnDisk(Path root) implements Storage {
+        }
+
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.akgarg.hibernate;
+
+/**
+ * Read model of a {@link com.akgarg.hibernate.entity.Student}, filled by {@link StudentProjections} straight from the
+ * result set without loading the entity.
+ *
+ * @param id   id of the student
+ * @param name name of the student
+ */
+public record StudentView(int id, String name) {
+}
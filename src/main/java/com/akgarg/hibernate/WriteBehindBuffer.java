@@ -0,0 +1,404 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for {@link Student} team updates, which coalesces repeated updates of the same student.
+ * <p>
+ * {@link #updateTeam(int, String)} only records the new team in memory and returns. Only the latest team per student
+ * is kept, so a student updated a hundred times between two flushes is written once. Pending teams are written when
+ * {@link Options#flushSize()} students are pending or every {@link Options#flushInterval()}: the students are loaded
+ * with {@link MultiLoader} and changed in a session, so the updates are sent as JDBC batches and keep the second
+ * level cache, the query cache and the search index consistent.
+ * <p>
+ * At most {@link Options#maxPending()} students are pending or being written. An update of another student then waits
+ * up to {@link Options#offerTimeout()} for a flush to make room and fails with a {@link RejectedExecutionException}
+ * after that. Pending teams are lost if the JVM dies before they are flushed; {@link #close()} flushes them.
+ * <p>
+ * A failed flush keeps its teams for the next one. A student which cannot be written at all, say a team longer than
+ * the column, would fail every later flush of its batch and fill the buffer: after {@link Options#maxAttempts()}
+ * failed flushes in a row the batch is written a student per transaction, and the students failing on their own are
+ * given up, logged and reported by {@link Metrics#rowsFailed()} and {@link Metrics#recentlyFailedIds()}.
+ */
+public final class WriteBehindBuffer implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(WriteBehindBuffer.class);
+    private static final int RECENTLY_FAILED_IDS = 100;
+
+    private final SessionFactory sessionFactory;
+    private final Options options;
+    private final Map<Integer, String> pending = new ConcurrentHashMap<>();
+    private final Map<Integer, String> flushing = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder rowsDropped = new LongAdder();
+    private final LongAdder rowsFailed = new LongAdder();
+    private final Deque<Integer> recentlyFailedIds = new ConcurrentLinkedDeque<>();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+    private int consecutiveFailedFlushes;  // guarded by flushLock
+    private volatile boolean closed;
+
+    private WriteBehindBuffer(final SessionFactory sessionFactory, final Options options) {
+        this.sessionFactory = sessionFactory;
+        this.options = options;
+        this.capacity = new Semaphore(options.maxPending());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("write-behind-flusher").daemon().factory());
+        final long intervalNanos = options.flushInterval().toNanos();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Buffer writing to the given session factory, which stays owned by the caller and has to be closed after the
+     * buffer.
+     */
+    static WriteBehindBuffer create(final SessionFactory sessionFactory, final Options options) {
+        return new WriteBehindBuffer(sessionFactory, options);
+    }
+
+    /**
+     * Records the new team of the given student, to be written by a later flush. Updates of a student which does not
+     * exist (anymore) when the flush runs are dropped.
+     *
+     * @throws RejectedExecutionException if the buffer is full for longer than {@link Options#offerTimeout()}, or
+     *                                    closed
+     */
+    void updateTeam(final int id, final String team) {
+        if (closed) {
+            throw new RejectedExecutionException("write-behind buffer is closed");
+        }
+        updates.increment();
+        if (pending.computeIfPresent(id, (ignored, previousTeam) -> team) != null) {
+            return;
+        }
+
+        acquireCapacity();
+        if (pending.put(id, team) != null) {
+            // another thread added the student in the meantime, its slot is used
+            capacity.release();
+        }
+        if (pending.size() >= options.flushSize() && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Team of the given student not yet written to the database, to be preferred over the team loaded from it.
+     */
+    Optional<String> pendingTeam(final int id) {
+        final String team = pending.get(id);
+        return Optional.ofNullable(team != null ? team : flushing.get(id));
+    }
+
+    /**
+     * Writes all pending teams before returning.
+     *
+     * @return number of students written
+     */
+    int flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            int written = 0;
+            while (!pending.isEmpty()) {
+                written += flushBatch();
+            }
+            return written;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(
+                pending.size() + flushing.size(),
+                updates.sum(),
+                rowsWritten.sum(),
+                rowsDropped.sum(),
+                rowsFailed.sum(),
+                List.copyOf(recentlyFailedIds),
+                flushes.sum(),
+                failedFlushes.sum(),
+                backpressureWaits.sum(),
+                flushLatency.snapshot()
+        );
+    }
+
+    /**
+     * Rejects further updates, stops the periodic flush and writes all pending teams.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(options.offerTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("write-behind flusher still running after {}", options.offerTimeout());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void acquireCapacity() {
+        if (capacity.tryAcquire()) {
+            return;
+        }
+        backpressureWaits.increment();
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        try {
+            if (!capacity.tryAcquire(options.offerTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new RejectedExecutionException("write-behind buffer full, " + options.maxPending() + " students pending");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for write-behind capacity", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("write-behind flush failed, the pending teams are kept for the next flush", e);
+        }
+    }
+
+    /**
+     * Moves up to {@link Options#flushSize()} pending teams to {@link #flushing} and writes them in one transaction.
+     * On failure the teams not updated since are put back into {@link #pending}, after {@link Options#maxAttempts()}
+     * failures in a row the students are written one by one instead (see {@link #flushOneByOne(List, RuntimeException)}).
+     */
+    private int flushBatch() {
+        final List<Integer> ids = new ArrayList<>(options.flushSize());
+        for (final Integer id : pending.keySet()) {
+            final String team = pending.remove(id);
+            if (team != null) {
+                flushing.put(id, team);
+                ids.add(id);
+                if (ids.size() == options.flushSize()) {
+                    break;
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        final long startNanos = System.nanoTime();
+        final int dropped;
+        try {
+            dropped = write(ids);
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            if (++consecutiveFailedFlushes < options.maxAttempts()) {
+                requeue(ids);
+                throw e;
+            }
+            consecutiveFailedFlushes = 0;
+            LOGGER.warn("write-behind flush failed {} times in a row, writing its {} students one by one", options.maxAttempts(), ids.size());
+            return flushOneByOne(ids, e);
+        }
+
+        consecutiveFailedFlushes = 0;
+        flushLatency.record(System.nanoTime() - startNanos);
+        flushes.increment();
+        rowsWritten.add(ids.size() - dropped);
+        rowsDropped.add(dropped);
+        release(ids);
+        return ids.size();
+    }
+
+    /**
+     * Writes the students of a batch which kept failing in a transaction each, so that a single student which cannot
+     * be written does not block the others. Students failing on their own are given up. When none of them can be
+     * written the database is more likely unavailable than every row wrong, all teams are kept then.
+     */
+    private int flushOneByOne(final List<Integer> ids, final RuntimeException batchFailure) {
+        final List<Integer> failedIds = new ArrayList<>();
+        RuntimeException firstFailure = null;
+        int dropped = 0;
+        for (final Integer id : ids) {
+            try {
+                dropped += write(List.of(id));
+            } catch (RuntimeException e) {
+                failedIds.add(id);
+                firstFailure = firstFailure == null ? e : firstFailure;
+            }
+        }
+        if (failedIds.size() == ids.size()) {
+            requeue(ids);
+            throw batchFailure;
+        }
+
+        LOGGER.error("giving up the write-behind teams of students {}, they fail on their own", failedIds, firstFailure);
+        for (final Integer id : failedIds) {
+            recentlyFailedIds.addFirst(id);
+            if (recentlyFailedIds.size() > RECENTLY_FAILED_IDS) {
+                recentlyFailedIds.pollLast();
+            }
+        }
+        flushes.increment();
+        rowsWritten.add(ids.size() - failedIds.size() - dropped);
+        rowsDropped.add(dropped);
+        rowsFailed.add(failedIds.size());
+        release(ids);
+        return ids.size() - failedIds.size();
+    }
+
+    /**
+     * Writes the teams of the given students, which are in {@link #flushing}, in one transaction.
+     *
+     * @return number of students which did not exist anymore
+     */
+    private int write(final List<Integer> ids) {
+        int dropped = 0;
+        try (Session session = sessionFactory.openSession()) {
+            session.setJdbcBatchSize(options.flushSize());
+            session.beginTransaction();
+            try {
+                final List<Student> students = MultiLoader.load(session, Student.class, ids, MultiLoader.Options.defaults());
+                for (int i = 0; i < ids.size(); i++) {
+                    if (students.get(i) != null) {
+                        students.get(i).setTeam(flushing.get(ids.get(i)));
+                    } else {
+                        dropped++;
+                    }
+                }
+                session.getTransaction().commit();
+            } catch (RuntimeException e) {
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+                throw e;
+            }
+        }
+        return dropped;
+    }
+
+    private void requeue(final List<Integer> ids) {
+        for (final Integer id : ids) {
+            // a newer team recorded during the flush wins, its slot is already held by the flushed team
+            if (pending.putIfAbsent(id, flushing.remove(id)) != null) {
+                capacity.release();
+            }
+        }
+    }
+
+    private void release(final List<Integer> ids) {
+        for (final Integer id : ids) {
+            flushing.remove(id);
+        }
+        capacity.release(ids.size());
+    }
+
+    /**
+     * @param maxPending    maximum number of students pending or being written, bounds the memory of the buffer
+     * @param flushSize     number of pending students which triggers a flush, also the number of students written
+     *                      per transaction and JDBC batch
+     * @param flushInterval time between two periodic flushes
+     * @param offerTimeout  how long an update waits for room in a full buffer
+     * @param maxAttempts   failed flushes in a row after which a batch is written one student at a time
+     */
+    public record Options(int maxPending, int flushSize, Duration flushInterval, Duration offerTimeout, int maxAttempts) {
+
+        public Options {
+            if (maxPending < 1 || flushSize < 1 || flushSize > maxPending) {
+                throw new IllegalArgumentException("invalid sizes: maxPending=" + maxPending + ", flushSize=" + flushSize);
+            }
+            if (flushInterval == null || flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("flushInterval must be positive");
+            }
+            if (offerTimeout == null || offerTimeout.isNegative()) {
+                throw new IllegalArgumentException("offerTimeout must not be negative");
+            }
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+            }
+        }
+
+        public static Options defaults() {
+            return new Options(100_000, 1_000, Duration.ofMillis(200), Duration.ofSeconds(5), 3);
+        }
+
+        public Options withMaxPending(final int maxPending) {
+            return new Options(maxPending, flushSize, flushInterval, offerTimeout, maxAttempts);
+        }
+
+        public Options withFlushSize(final int flushSize) {
+            return new Options(maxPending, flushSize, flushInterval, offerTimeout, maxAttempts);
+        }
+
+        public Options withFlushInterval(final Duration flushInterval) {
+            return new Options(maxPending, flushSize, flushInterval, offerTimeout, maxAttempts);
+        }
+
+        public Options withMaxAttempts(final int maxAttempts) {
+            return new Options(maxPending, flushSize, flushInterval, offerTimeout, maxAttempts);
+        }
+
+    }
+
+    /**
+     * @param pending           students pending or being written
+     * @param updates           updates recorded
+     * @param rowsWritten       students written, at most one per student and flush
+     * @param rowsDropped       flushed students which did not exist anymore
+     * @param rowsFailed        students given up because their team could not be written even on its own
+     * @param recentlyFailedIds ids of the last given up students, most recent first
+     * @param flushes           successful flushes
+     * @param failedFlushes     flush transactions rolled back, their teams were kept for the next flush
+     * @param backpressureWaits updates which had to wait for room in the buffer
+     * @param flushLatency      duration of the successful flush transactions
+     */
+    public record Metrics(int pending,
+                          long updates,
+                          long rowsWritten,
+                          long rowsDropped,
+                          long rowsFailed,
+                          List<Integer> recentlyFailedIds,
+                          long flushes,
+                          long failedFlushes,
+                          long backpressureWaits,
+                          LatencyHistogram.Snapshot flushLatency) {
+
+        /**
+         * Updates recorded per student written, 1 when no update was coalesced.
+         */
+        public double coalescingRatio() {
+            return rowsWritten == 0 ? 0 : (double) updates / rowsWritten;
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.akgarg.hibernate;
+
+import com.akgarg.hibernate.entity.Student;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.StatisticsSettings;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.akgarg.hibernate.HConf.embeddedDatabaseSettings;
+import static com.akgarg.hibernate.HConf.getSessionFactory;
+import static com.akgarg.hibernate.HibernateUtils.syntheticStudents;
+
+/**
+ * Updates the team of a small set of hot students from many virtual threads, once with one transaction per update
+ * (the {@link DirtyCheckingExample} way) and once through a {@link WriteBehindBuffer}, on an in-memory H2 database.
+ * Logs the time and statements of both and the coalescing ratio and flush latency of the buffer.
+ * <p>
+ * Usage: {@code WriteBehindExample [updates] [hotStudents]}
+ */
+public class WriteBehindExample {
+
+    private static final Logger LOGGER = LogManager.getLogger(WriteBehindExample.class);
+    private static final int TOTAL_NUMBER_OF_STUDENTS = 10_000;
+    private static final int WRITERS = 64;
+
+    public static void main(String[] args) {
+        final int updates = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final int hotStudents = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        final Map<String, Object> settings = embeddedDatabaseSettings("write_behind_example");
+        settings.put(StatisticsSettings.GENERATE_STATISTICS, true);
+
+        try (SessionFactory sessionFactory = getSessionFactory(settings)) {
+            BulkInserter.insert(sessionFactory, syntheticStudents(TOTAL_NUMBER_OF_STUDENTS),
+                    BulkInserter.Options.defaults().withMode(BulkInserter.Mode.STATELESS));
+
+            // far fewer direct updates, one transaction each would take too long otherwise
+            run(sessionFactory, "transaction per update", updates / 10, hotStudents, (id, team) -> {
+                try (Session session = sessionFactory.openSession()) {
+                    session.beginTransaction();
+                    session.get(Student.class, id).setTeam(team);
+                    session.getTransaction().commit();
+                }
+            });
+
+            final WriteBehindBuffer.Options options = WriteBehindBuffer.Options.defaults()
+                    .withFlushSize(500)
+                    .withFlushInterval(Duration.ofMillis(100));
+            final WriteBehindBuffer buffer = WriteBehindBuffer.create(sessionFactory, options);
+            try (buffer) {
+                run(sessionFactory, "write-behind", updates, hotStudents, buffer::updateTeam);
+                LOGGER.info("pending team of student 1 before the final flush: {}", buffer.pendingTeam(1).orElse("none"));
+            }
+
+            final WriteBehindBuffer.Metrics metrics = buffer.metrics();
+            LOGGER.info("write-behind: {} updates, {} rows written in {} flushes, coalescing ratio {}, {} backpressure waits",
+                    metrics.updates(), metrics.rowsWritten(), metrics.flushes(),
+                    String.format("%.1f", metrics.coalescingRatio()), metrics.backpressureWaits());
+            LOGGER.info("write-behind flush latency: {}", metrics.flushLatency());
+        }
+    }
+
+    private static void run(final SessionFactory sessionFactory,
+                            final String name,
+                            final int updates,
+                            final int hotStudents,
+                            final TeamUpdate update) {
+        sessionFactory.getStatistics().clear();
+        final long startNanos = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int writer = 0; writer < WRITERS; writer++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < updates / WRITERS; i++) {
+                        update.apply(ThreadLocalRandom.current().nextInt(1, hotStudents + 1), "Team " + ThreadLocalRandom.current().nextInt(16));
+                    }
+                });
+            }
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        LOGGER.info("{}: {} updates in {} ms -> {} updates/sec, {} statements, {} transactions",
+                name, updates, elapsedNanos / 1_000_000,
+                String.format("%.0f", updates * 1_000_000_000.0 / Math.max(1, elapsedNanos)),
+                sessionFactory.getStatistics().getPrepareStatementCount(),
+                sessionFactory.getStatistics().getSuccessfulTransactionCount());
+    }
+
+    @FunctionalInterface
+    private interface TeamUpdate {
+        void apply(int id, String team);
+    }
+
+}
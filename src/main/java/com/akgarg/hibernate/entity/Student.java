@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.FullTextField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
 
 @SuppressWarnings("JpaDataSourceORMInspection")
 @Getter
@@ -13,16 +16,23 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 @Entity
 @Cacheable
 @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-@Table(name = "student")
+@BatchSize(size = 50)  // uninitialized student proxies are loaded 50 at a time, like MultiLoader's default chunk
+@Indexed  // full-text index of StudentSearch, ignored unless hibernate search is enabled
+@Table(name = "student", indexes = @Index(name = "idx_student_name_id", columnList = "name, id"))  // keyset pagination by name
 public class Student {
 
+    // pooled sequence instead of IDENTITY: ids are pre-allocated in blocks, so inserts can be JDBC batched.
+    // on databases without sequences (MySQL) hibernate emulates the sequence with a single-row table.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+    @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = 50)
     private int id;
 
+    @FullTextField
     @Column(name = "name", nullable = false)
     private String name;
 
+    @FullTextField
     @Column(name = "team", nullable = false)
     private String team;
 